@@ -0,0 +1,83 @@
+package tello;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import tellolib.control.TelloControl;
+import tellolib.simulator.TelloSimulator;
+import tellolib.swarm.DroneHandle;
+import tellolib.swarm.TelloSwarm;
+
+// Measures command throughput against the local Tello simulator, first
+// one command at a time, then with up to WINDOW commands pipelined. Change LATENCY,
+// JITTER and LOSS to see their effect. No drone needed.
+public class CommunicationBenchmark
+{
+	private final Logger logger = Logger.getGlobal();
+
+	private static final int SIMULATOR_PORT = 9889, COMMANDS = 2000, WINDOW = 32;
+	private static final int LATENCY = 2, JITTER = 2;
+	private static final double LOSS = 0;
+
+	public void execute()
+	{
+		logger.info("start");
+
+		TelloSimulator simulator = new TelloSimulator(SIMULATOR_PORT, 8890, 11111);
+		TelloSwarm swarm = new TelloSwarm(8889, 8890);
+
+		simulator.setLatency(LATENCY);
+		simulator.setJitter(JITTER);
+		simulator.setLossRate(LOSS);
+
+		try
+		{
+			simulator.start();
+			swarm.open();
+
+			DroneHandle drone = swarm.addDrone(new InetSocketAddress("127.0.0.1", SIMULATOR_PORT));
+			TelloControl control = drone.getControl();
+
+			control.connect();
+			control.enterCommandMode();
+
+			long start = System.nanoTime();
+
+			for (int i = 0; i < COMMANDS; i++) control.getBattery();
+
+			report("sequential", start);
+
+			start = System.nanoTime();
+
+			CompletableFuture<?>[] reads = new CompletableFuture<?>[WINDOW];
+
+			for (int i = 0; i < COMMANDS; i++)
+			{
+				// Wait for the oldest command before reusing its slot.
+				if (reads[i % WINDOW] != null) reads[i % WINDOW].join();
+
+				reads[i % WINDOW] = control.getBatteryAsync();
+			}
+
+			for (CompletableFuture<?> read : reads) if (read != null) read.join();
+
+			report("pipelined", start);
+		}
+		catch (Exception e) { e.printStackTrace(); }
+		finally
+		{
+			swarm.close();
+			simulator.close();
+		}
+
+		logger.info("end");
+	}
+
+	private void report( String name, long start )
+	{
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		logger.info(String.format("%-10s %d commands in %.2f s, %.0f commands/s", name, COMMANDS, elapsed, COMMANDS / elapsed));
+	}
+}
@@ -183,7 +183,9 @@ public class FindFace
 		    		//                  L/R      F/B    U/D    YAW
 	    			telloControl.flyRC(rightX, rightY, leftY, leftX);
 
-	    			// Flips or other direct drone commands must go here to be executed after FlyRC is done.
+	    			// Flips or other direct drone commands go here. FlyRC only sets the stick
+	    			// positions the rc channel sends, which holds off repeating zero while a
+	    			// command waits for its response.
 	    			
 		    		if (currState.dpadUpJustPressed) telloControl.doFlip(TelloFlip.forward);
 		    		
@@ -6,6 +6,7 @@ import java.util.logging.Logger;
 import tellolib.camera.MissionDetectionCamera;
 import tellolib.camera.TelloCamera;
 import tellolib.communication.TelloConnection;
+import tellolib.control.TelemetrySubscription;
 import tellolib.control.TelloControl;
 import tellolib.drone.TelloDrone;
 
@@ -16,7 +17,7 @@ public class FindMissionPad
 	private TelloControl	telloControl;
 	private TelloDrone		drone;
 	private TelloCamera		camera;
-	private boolean			padFound;
+	private volatile boolean	padFound;
 	
 	public void execute()
 	{
@@ -29,6 +30,8 @@ public class FindMissionPad
 	    camera = TelloCamera.getInstance();
 
 	    telloControl.setLogLevel(Level.FINE);
+	    
+	    TelemetrySubscription padWatcher = null;
 
 	    try 
 	    {
@@ -44,14 +47,18 @@ public class FindMissionPad
 		    
 		    telloControl.setMissionMode(true, MissionDetectionCamera.downward);
 		    
-		    // Create background thread to watch for mission pad under drone. It 
-		    // will signal to stop the search. WatchForPad is defined below.
-		    
-		    WatchForPad padWatcher = new WatchForPad();
-		    
-		    // Start the thread. start() calls Thread run method.
+		    // Subscribe to the status feed from drone to watch for a mission pad
+		    // under the drone. The listener is called once when a pad is first
+		    // recognized by the selected camera and will signal to stop the search.
 		    
-		    padWatcher.start();
+		    padWatcher = telloControl.getTelemetryBus().subscribe(
+		    		telemetry -> telemetry.getMissionPadId() > 0 && drone.isFlying(),
+		    		telemetry ->
+		    		{
+		    			padFound = true;
+		    			telloControl.stopAsync();	// Put drone into hover.
+		    			logger.info(String.format("mission pad %d detected", telemetry.getMissionPadId()));
+		    		});
 		    
 		    // Now we will execute a series of movement commands to fly in a grid
 		    // pattern. Distances in centimeters.
@@ -93,6 +100,10 @@ public class FindMissionPad
 	    	e.printStackTrace();
 	    } finally 
 	    {
+	    	// Stop watching whether the search ended or failed, the listener
+	    	// runs on the shared bus executor.
+	    	if (padWatcher != null) padWatcher.cancel();
+	    	
 	    	if (telloControl.getConnection() == TelloConnection.CONNECTED && drone.isFlying())
 	    	{
 	    		try
@@ -105,40 +116,4 @@ public class FindMissionPad
 	    
 	    logger.info("end");
 	}
-	
-	// Thread class that runs in background and watches for the status feed from drone
-	// to indicate a mission pad is recognized by the selected camera.
-	
-	private class WatchForPad extends Thread
-	{
-		public void run()
-		{
-			int padId = 0;
-			
-			logger.info("Pad monitor thread started");
-			
-	    	try
-	    	{
-	    		// Loop until we are done.
-	    		
-    	    	while (!isInterrupted() && drone.isFlying())
-    	    	{
-    	    		padId = drone.getMissionPadId();
-    	    		
-    	    		// Pad id greater than zero means a pad is detected.
-    	    		
-    	    		if (padId > 0) 
-    	    		{
-    	    			padFound = true;
-    	    			telloControl.stop();	// Put drone into hover.
-    	    			logger.info(String.format("mission pad %d detected", padId));
-    	    			break;	// Kicks us out of the while loop.
-    	    		}
-    	    		
-    	    		sleep(10);	// Wait 10 ms.
-    	    	}
-	    	}
-	    	catch (InterruptedException e) { }
-	    }
-	}
 }
@@ -0,0 +1,55 @@
+package tello;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import tellolib.control.FlightReplay;
+import tellolib.control.TelemetryBus;
+import tellolib.control.TelemetrySubscription;
+import tellolib.drone.TelemetryField;
+import tellolib.drone.TelloDrone;
+
+// Plays a flight recorded with TelloControl.startFlightRecorder() through
+// the status monitor as fast as possible and reports the packet rate. Set
+// FOLDER to the folder the flight was recorded in. No drone needed.
+public class FlightReplayBenchmark
+{
+	private final Logger logger = Logger.getGlobal();
+
+	private static final String FOLDER = "flights";
+
+	public void execute()
+	{
+		logger.info("start");
+
+		TelloDrone drone = new TelloDrone();
+		TelemetryBus bus = new TelemetryBus();
+
+		TelemetrySubscription battery = bus.subscribeChange(TelemetryField.BATTERY,
+				telemetry -> logger.info("battery " + telemetry.getBattery()));
+
+		FlightReplay replay = new FlightReplay(drone, bus);
+
+		replay.setSpeed(FlightReplay.AS_FAST_AS_POSSIBLE);
+
+		try
+		{
+			long start = System.nanoTime();
+
+			long packets = replay.replay(Paths.get(FOLDER));
+
+			long elapsed = System.nanoTime() - start;
+
+			logger.info(String.format("%d status packets in %.1f ms, %.0f packets/s, %d commands, connection %s",
+					packets, elapsed / 1e6, packets * 1e9 / Math.max(1, elapsed), replay.getCommandCount(),
+					drone.getConnection()));
+
+			logger.info("battery drain " + drone.getHistory().slope(TelemetryField.BATTERY, TimeUnit.HOURS.toMillis(24)) * 60 +
+					" %/minute, subscriber " + battery.getLag());
+		}
+		catch (Exception e) { e.printStackTrace(); }
+
+		logger.info("end");
+	}
+}
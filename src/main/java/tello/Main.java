@@ -61,6 +61,14 @@ public class Main
 //	    FindFace demo = new FindFace();
 
 //	    FindFace2 demo = new FindFace2();
+
+//	    StatusParserBenchmark demo = new StatusParserBenchmark();
+
+//	    FlightReplayBenchmark demo = new FlightReplayBenchmark();
+
+//	    CommunicationBenchmark demo = new CommunicationBenchmark();
+
+//	    TelloCommandsCheck demo = new TelloCommandsCheck();
 	    
 	    // Run that program.
 	    demo.execute();
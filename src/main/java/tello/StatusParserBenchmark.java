@@ -0,0 +1,115 @@
+package tello;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+import tellolib.communication.TelloStatus;
+import tellolib.communication.TelloStatusParser;
+
+// Compares the byte level TelloStatusParser with the String.split() parsing
+// the status monitor used before. Runs each parser over a typical status
+// packet and reports time and bytes allocated per packet. No drone needed.
+public class StatusParserBenchmark
+{
+	private final Logger logger = Logger.getGlobal();
+
+	private static final String PACKET = "mid:3;x:12;y:-45;z:98;mpry:1,-2,87;pitch:1;roll:-2;yaw:87;" +
+			"vgx:0;vgy:-3;vgz:0;templ:62;temph:65;tof:102;h:90;bat:76;baro:182.53;time:42;" +
+			"agx:-12.00;agy:4.00;agz:-1001.00;\r\n";
+
+	private static final int WARMUP = 200_000, PACKETS = 2_000_000;
+
+	private long sink;
+
+	public void execute()
+	{
+		logger.info("start");
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+		buffer.put(PACKET.getBytes(StandardCharsets.US_ASCII)).flip();
+
+		TelloStatusParser parser = new TelloStatusParser();
+		TelloStatus status = new TelloStatus();
+
+		for (int i = 0; i < WARMUP; i++) { legacyParse(buffer); byteParse(buffer, parser, status); }
+
+		measure("String.split parser", () -> legacyParse(buffer));
+
+		measure("TelloStatusParser", () -> byteParse(buffer, parser, status));
+
+		logger.info("end " + sink);
+	}
+
+	private void measure( String name, Runnable parse )
+	{
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		long bytes = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < PACKETS; i++) parse.run();
+
+		long elapsed = System.nanoTime() - start;
+		bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+		logger.info(String.format("%-20s %8.1f ns/packet %8.1f bytes/packet", name,
+				(double) elapsed / PACKETS, (double) bytes / PACKETS));
+	}
+
+	private void byteParse( ByteBuffer buffer, TelloStatusParser parser, TelloStatus status )
+	{
+		parser.parse(buffer, status);
+
+		sink += status.getBattery() + status.getYaw() + (long) status.getBarometer();
+	}
+
+	// The parsing done by the status monitor before TelloStatusParser.
+	private void legacyParse( ByteBuffer buffer )
+	{
+		byte[] receiveData = new byte[1024];
+		buffer.duplicate().get(receiveData, 0, buffer.remaining());
+		String logData = new String(java.util.Arrays.copyOf(receiveData, buffer.remaining()), StandardCharsets.UTF_8);
+
+		String[] keyValuePairs = logData.split(";");
+
+		int[] attpry = new int[3], mpxyz = new int[3], mppry = new int[3];
+		double[] accelxyz = new double[3], veloxyz = new double[3];
+		int battery = 0;
+		double barometer = 0;
+
+		for(String pair : keyValuePairs)
+		{
+		    String[] entry = pair.split(":");
+
+		    switch (entry[0])
+		    {
+		    	case "bat": battery = Integer.parseInt(entry[1].trim()); break;
+		    	case "baro": barometer = Double.parseDouble(entry[1].trim()); break;
+		    	case "pitch": attpry[0] = Integer.parseInt(entry[1].trim()); break;
+		    	case "roll": attpry[1] = Integer.parseInt(entry[1].trim()); break;
+		    	case "yaw": attpry[2] = Integer.parseInt(entry[1].trim()); break;
+		    	case "agx": accelxyz[0] = Double.parseDouble(entry[1].trim()); break;
+		    	case "agy": accelxyz[1] = Double.parseDouble(entry[1].trim()); break;
+		    	case "agz": accelxyz[2] = Double.parseDouble(entry[1].trim()); break;
+		    	case "vgx": veloxyz[0] = Double.parseDouble(entry[1].trim()); break;
+		    	case "vgy": veloxyz[1] = Double.parseDouble(entry[1].trim()); break;
+		    	case "vgz": veloxyz[2] = Double.parseDouble(entry[1].trim()); break;
+		    	case "x": mpxyz[0] = Integer.parseInt(entry[1].trim()); break;
+		    	case "y": mpxyz[1] = Integer.parseInt(entry[1].trim()); break;
+		    	case "z": mpxyz[2] = Integer.parseInt(entry[1].trim()); break;
+
+		    	case "mpry":
+		    		String[] entry2 = entry[1].split(",");
+		    		mppry[0] = Integer.parseInt(entry2[0].trim());
+		    		mppry[1] = Integer.parseInt(entry2[1].trim());
+		    		mppry[2] = Integer.parseInt(entry2[2].trim());
+		    		break;
+		    }
+		}
+
+		sink += battery + attpry[2] + (long) barometer;
+	}
+}
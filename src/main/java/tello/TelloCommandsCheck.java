@@ -0,0 +1,303 @@
+package tello;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import tellolib.command.TelloCommandValues;
+import tellolib.command.TelloCommands;
+import tellolib.exception.TelloCommandException;
+
+// Randomized self check of TelloCommands. For random parameters, many near
+// the range limits, checks that each builder and validate() accept and
+// reject the same commands, that the range and dead box limits are exactly
+// where documented, and that the integer arc radius check in isValidArc()
+// agrees with a double precision reference. Logs each failure and a summary.
+// The seed is logged; pass it to the constructor or set the tello.seed
+// system property (-Dtello.seed=...) to repeat a run. No drone needed.
+public class TelloCommandsCheck
+{
+	private final Logger logger = Logger.getGlobal();
+
+	private static final int CASES = 200_000;
+
+	private static final String[] MOVES = {TelloCommandValues.UP, TelloCommandValues.DOWN, TelloCommandValues.LEFT,
+			TelloCommandValues.RIGHT, TelloCommandValues.FORWARD, TelloCommandValues.BACK};
+
+	private final long seed;
+
+	private final Random random;
+
+	private int checks, failures;
+
+	// Seed from the tello.seed system property, else from the clock.
+	public TelloCommandsCheck()
+	{
+		this(Long.getLong("tello.seed", System.nanoTime()));
+	}
+
+	public TelloCommandsCheck(long seed)
+	{
+		this.seed = seed;
+		random = new Random(seed);
+	}
+
+	public void execute()
+	{
+		logger.info("start, seed " + seed);
+
+		checkEdges();
+
+		for (int i = 0; i < CASES; i++)
+		{
+			checkMove();
+			checkRotate();
+			checkSpeed();
+			checkGo();
+			checkCurve();
+			checkJump();
+			checkArc();
+		}
+
+		logger.info(String.format("end, %d checks, %d failures, seed %d", checks, failures, seed));
+	}
+
+	// Each limit accepted and the value past it rejected, by the builders
+	// and by validate().
+	private void checkEdges()
+	{
+		for (String move : MOVES)
+		{
+			expect(move + " min", true, () -> TelloCommands.move(move, TelloCommands.MIN_DISTANCE).composeCommand());
+			expect(move + " max", true, () -> TelloCommands.move(move, TelloCommands.MAX_DISTANCE).composeCommand());
+			expect(move + " below min", false, () -> TelloCommands.move(move, TelloCommands.MIN_DISTANCE - 1).composeCommand());
+			expect(move + " above max", false, () -> TelloCommands.move(move, TelloCommands.MAX_DISTANCE + 1).composeCommand());
+		}
+
+		expect("cw min", true, () -> TelloCommands.rotate(TelloCommandValues.CW, TelloCommands.MIN_ANGLE).composeCommand());
+		expect("cw max", true, () -> TelloCommands.rotate(TelloCommandValues.CW, TelloCommands.MAX_ANGLE).composeCommand());
+		expect("cw 0", false, () -> TelloCommands.rotate(TelloCommandValues.CW, 0).composeCommand());
+		expect("cw above max", false, () -> TelloCommands.rotate(TelloCommandValues.CW, TelloCommands.MAX_ANGLE + 1).composeCommand());
+
+		expect("speed min", true, () -> TelloCommands.speed(TelloCommands.MIN_SPEED).composeCommand());
+		expect("speed max", true, () -> TelloCommands.speed(TelloCommands.MAX_SPEED).composeCommand());
+		expect("speed below min", false, () -> TelloCommands.speed(TelloCommands.MIN_SPEED - 1).composeCommand());
+		expect("speed above max", false, () -> TelloCommands.speed(TelloCommands.MAX_SPEED + 1).composeCommand());
+
+		int box = TelloCommands.DEAD_BOX, max = TelloCommands.MAX_COORDINATE;
+
+		// Every point of the dead box corners and faces is rejected, one
+		// coordinate just outside it is enough to be accepted.
+		for (int x = -box; x <= box; x += box)
+			for (int y = -box; y <= box; y += box)
+				for (int z = -box; z <= box; z += box)
+				{
+					int px = x, py = y, pz = z;
+
+					expect("go dead box " + px + " " + py + " " + pz, false, () -> TelloCommands.go(px, py, pz, 50).composeCommand());
+				}
+
+		expect("go x out of dead box", true, () -> TelloCommands.go(box + 1, box, box, 50).composeCommand());
+		expect("go y out of dead box", true, () -> TelloCommands.go(-box, -box - 1, box, 50).composeCommand());
+		expect("go z out of dead box", true, () -> TelloCommands.go(0, 0, box + 1, 50).composeCommand());
+		expect("go max", true, () -> TelloCommands.go(max, -max, max, 50).composeCommand());
+		expect("go above max", false, () -> TelloCommands.go(max + 1, 0, 0, 50).composeCommand());
+		expect("go below min", false, () -> TelloCommands.go(0, -max - 1, 0, 50).composeCommand());
+		expect("go pad min", true, () -> TelloCommands.go(100, 0, 0, 50, TelloCommands.MIN_PAD).composeCommand());
+		expect("go pad max", true, () -> TelloCommands.go(100, 0, 0, 50, TelloCommands.MAX_PAD).composeCommand());
+		expect("go pad 0", false, () -> TelloCommands.go(100, 0, 0, 50, 0).composeCommand());
+		expect("go pad above max", false, () -> TelloCommands.go(100, 0, 0, 50, TelloCommands.MAX_PAD + 1).composeCommand());
+
+		// Arcs of radius exactly 50 and 1000, the radius limits, and just past them.
+		expect("curve min radius", true, () -> TelloCommands.curve(50, 50, 0, 100, 0, 0, 20).composeCommand());
+		expect("curve below min radius", false, () -> TelloCommands.curve(49, 49, 0, 98, 0, 0, 20).composeCommand());
+		expect("curve max radius", true, () -> TelloCommands.curve(40, 280, 0, 40, -280, 0, 20).composeCommand());
+		expect("curve above max radius", false, () -> TelloCommands.curve(40, 280, 0, 40, -281, 0, 20).composeCommand());
+		expect("curve max speed", true, () -> TelloCommands.curve(50, 50, 0, 100, 0, 0, TelloCommands.MAX_CURVE_SPEED).composeCommand());
+		expect("curve above max speed", false, () -> TelloCommands.curve(50, 50, 0, 100, 0, 0, TelloCommands.MAX_CURVE_SPEED + 1).composeCommand());
+		expect("curve in line", false, () -> TelloCommands.curve(100, 0, 0, 200, 0, 0, 20).composeCommand());
+
+		check("arc in line", !TelloCommands.isValidArc(100, 100, 100, 200, 200, 200));
+		check("arc through origin twice", !TelloCommands.isValidArc(100, 0, 0, 0, 0, 0));
+
+		for (int i = -TelloCommands.MAX_RC - 1; i <= TelloCommands.MAX_RC + 1; i++)
+		{
+			String rc = TelloCommandValues.RC + " 0 " + i + " 0 0";
+
+			check("validate " + rc, valid(rc) == (Math.abs(i) <= TelloCommands.MAX_RC));
+		}
+	}
+
+	private void checkMove()
+	{
+		String move = MOVES[random.nextInt(MOVES.length)];
+		int distance = value(TelloCommands.MIN_DISTANCE, TelloCommands.MAX_DISTANCE);
+
+		agree(move + " " + distance, () -> TelloCommands.move(move, distance).composeCommand());
+	}
+
+	private void checkRotate()
+	{
+		String direction = random.nextBoolean() ? TelloCommandValues.CW : TelloCommandValues.CCW;
+		int angle = value(TelloCommands.MIN_ANGLE, TelloCommands.MAX_ANGLE);
+
+		agree(direction + " " + angle, () -> TelloCommands.rotate(direction, angle).composeCommand());
+	}
+
+	private void checkSpeed()
+	{
+		int speed = value(TelloCommands.MIN_SPEED, TelloCommands.MAX_SPEED);
+
+		agree(TelloCommandValues.SPEED + " " + speed, () -> TelloCommands.speed(speed).composeCommand());
+	}
+
+	private void checkGo()
+	{
+		int x = coordinate(), y = coordinate(), z = coordinate();
+		int speed = value(TelloCommands.MIN_SPEED, TelloCommands.MAX_SPEED);
+		int pad = value(TelloCommands.MIN_PAD, TelloCommands.MAX_PAD);
+		String go = TelloCommandValues.GO + " " + x + " " + y + " " + z + " " + speed;
+
+		agree(go, () -> TelloCommands.go(x, y, z, speed).composeCommand());
+		agree(go + " m" + pad, () -> TelloCommands.go(x, y, z, speed, pad).composeCommand());
+	}
+
+	private void checkCurve()
+	{
+		int x1 = coordinate(), y1 = coordinate(), z1 = coordinate();
+		int x2 = coordinate(), y2 = coordinate(), z2 = coordinate();
+		int speed = value(TelloCommands.MIN_SPEED, TelloCommands.MAX_CURVE_SPEED);
+		int pad = value(TelloCommands.MIN_PAD, TelloCommands.MAX_PAD);
+		String curve = TelloCommandValues.CURVE + " " + x1 + " " + y1 + " " + z1 + " " + x2 + " " + y2 + " " + z2 + " " + speed;
+
+		agree(curve, () -> TelloCommands.curve(x1, y1, z1, x2, y2, z2, speed).composeCommand());
+		agree(curve + " m" + pad, () -> TelloCommands.curve(x1, y1, z1, x2, y2, z2, speed, pad).composeCommand());
+	}
+
+	private void checkJump()
+	{
+		int x = coordinate(), y = coordinate(), z = coordinate();
+		int speed = value(TelloCommands.MIN_SPEED, TelloCommands.MAX_SPEED);
+		int yaw = random.nextInt(721) - 360;
+		int pad1 = value(TelloCommands.MIN_PAD, TelloCommands.MAX_PAD), pad2 = value(TelloCommands.MIN_PAD, TelloCommands.MAX_PAD);
+
+		agree(TelloCommandValues.JUMP + " " + x + " " + y + " " + z + " " + speed + " " + yaw + " m" + pad1 + " m" + pad2,
+				() -> TelloCommands.jump(x, y, z, speed, yaw, pad1, pad2).composeCommand());
+	}
+
+	// The integer radius check against the double reference. They may only
+	// differ when the radius is within rounding of a limit.
+	private void checkArc()
+	{
+		int x1 = coordinate(), y1 = coordinate(), z1 = coordinate();
+		int x2 = coordinate(), y2 = coordinate(), z2 = coordinate();
+
+		// Small coordinates often give radii near the lower limit.
+		if (random.nextInt(4) == 0)
+		{
+			x1 = random.nextInt(201) - 100; y1 = random.nextInt(201) - 100; z1 = random.nextInt(21) - 10;
+			x2 = random.nextInt(201) - 100; y2 = random.nextInt(201) - 100; z2 = random.nextInt(21) - 10;
+		}
+
+		boolean valid = TelloCommands.isValidArc(x1, y1, z1, x2, y2, z2);
+		double radius2 = reference(x1, y1, z1, x2, y2, z2);
+		double min = (double) TelloCommands.MIN_RADIUS * TelloCommands.MIN_RADIUS;
+		double max = (double) TelloCommands.MAX_RADIUS * TelloCommands.MAX_RADIUS;
+		boolean expected = radius2 >= min && radius2 <= max;
+		boolean nearLimit = Math.abs(radius2 - min) <= min * 1e-12 || Math.abs(radius2 - max) <= max * 1e-12;
+
+		check(String.format("arc %d %d %d %d %d %d radius %.6f", x1, y1, z1, x2, y2, z2, Math.sqrt(radius2)),
+				valid == expected || nearLimit);
+	}
+
+	// Square of the radius of the circle through the origin and the two
+	// points, in doubles: a b c / 2 |a x b|. Infinite if in line.
+	private static double reference(int x1, int y1, int z1, int x2, int y2, int z2)
+	{
+		double a = Math.sqrt((double) x1 * x1 + (double) y1 * y1 + (double) z1 * z1);
+		double b = Math.sqrt((double) x2 * x2 + (double) y2 * y2 + (double) z2 * z2);
+		double c = Math.sqrt(Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2) + Math.pow(z1 - z2, 2));
+		double cx = (double) y1 * z2 - (double) z1 * y2, cy = (double) z1 * x2 - (double) x1 * z2, cz = (double) x1 * y2 - (double) y1 * x2;
+		double cross = Math.sqrt(cx * cx + cy * cy + cz * cz);
+
+		if (cross == 0) return Double.POSITIVE_INFINITY;
+
+		double radius = a * b * c / (2 * cross);
+
+		return radius * radius;
+	}
+
+	// The builder accepts the parameters exactly when validate() accepts the
+	// command text, and the built command passes validate().
+	private void agree( String command, Supplier<String> builder )
+	{
+		String built = build(builder);
+
+		check("builder and validate " + command, (built != null) == valid(command));
+
+		if (built != null) check("validate built " + built, built.equals(command) && valid(built));
+	}
+
+	private void expect( String name, boolean accepted, Supplier<String> builder )
+	{
+		String built = build(builder);
+
+		check(name, (built != null) == accepted);
+
+		if (built != null) check(name + " validate", valid(built));
+	}
+
+	private static String build( Supplier<String> builder )
+	{
+		try
+		{
+			return builder.get();
+		}
+		catch (TelloCommandException e) { return null; }
+	}
+
+	private static boolean valid( String command )
+	{
+		try
+		{
+			TelloCommands.validate(command);
+			return true;
+		}
+		catch (TelloCommandException e) { return false; }
+	}
+
+	private void check( String name, boolean passed )
+	{
+		checks++;
+
+		if (!passed)
+		{
+			failures++;
+			if (failures <= 20) logger.severe("failed: " + name);
+		}
+	}
+
+	// Random value, half the time within 2 of a limit.
+	private int value( int min, int max )
+	{
+		switch (random.nextInt(4))
+		{
+			case 0: return min + random.nextInt(5) - 2;
+			case 1: return max + random.nextInt(5) - 2;
+			default: return min - 10 + random.nextInt(max - min + 21);
+		}
+	}
+
+	// Random coordinate, often at the dead box or range limits.
+	private int coordinate()
+	{
+		int sign = random.nextBoolean() ? 1 : -1;
+
+		switch (random.nextInt(4))
+		{
+			case 0: return sign * (TelloCommands.DEAD_BOX + random.nextInt(3) - 1);
+			case 1: return sign * (TelloCommands.MAX_COORDINATE + random.nextInt(3) - 1);
+			default: return random.nextInt(2 * TelloCommands.MAX_COORDINATE + 41) - TelloCommands.MAX_COORDINATE - 20;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package tello;
 
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,6 +15,7 @@ import tellolib.camera.ArucoMarkers;
 import tellolib.camera.TelloCamera;
 import tellolib.command.TelloFlip;
 import tellolib.control.TelloControl;
+import tellolib.drone.TelemetryField;
 import tellolib.drone.TelloDrone;
 
 public class TrackMarker
@@ -166,6 +168,14 @@ public class TrackMarker
 	    				// record time of detection.
 	    				lastDetectionTime = System.currentTimeMillis();
 	    				
+	    				// The marker position is as of the image it was found in,
+	    				// log how old that image is and the yaw at the time.
+	    				long frameTime = markerDetector.getFrameTime();
+	    				
+	    				logger.finer("frame " + markerDetector.getFrameSequence() + " age: " 
+	    						+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - frameTime) + " ms yaw: "
+	    						+ drone.getHistory().valueAt(TelemetryField.YAW, frameTime));
+	    				
 		    			// How many markers are detected? This is just information.
 	    				markerCount = markerDetector.getMarkerCount();
 	
@@ -215,7 +225,9 @@ public class TrackMarker
 		    		//                  L/R      F/B    U/D    YAW
 	    			telloControl.flyRC(rightX, rightY, leftY, leftX);
 
-	    			// Flips or other direct drone commands must go here to be executed after FlyRC is done.
+	    			// Flips or other direct drone commands go here. FlyRC only sets the stick
+	    			// positions the rc channel sends, which holds off repeating zero while a
+	    			// command waits for its response.
 	    			
 		    		if (currState.dpadUpJustPressed) telloControl.doFlip(TelloFlip.forward);
 		    		
@@ -22,6 +22,7 @@ public class ArucoMarkers implements ArucoMarkersInterface
 	private Dictionary			dict;
 	private Mat					ids;
 	private List<Mat> 			corners;
+	private long				frameSequence, frameTime;
 	
 	private ArucoMarkers()
 	{
@@ -45,14 +46,27 @@ public class ArucoMarkers implements ArucoMarkersInterface
 	@Override
 	public boolean detectMarkers()
 	{
-		Mat image = TelloCamera.getInstance().getImage();
-		
-		return detectMarkers(image);	
+		// Detect on the shared frame, detection only reads the image.
+		try (Frame frame = TelloCamera.getInstance().leaseFrame())
+		{
+			boolean found = detectMarkers(frame == null ? null : frame.getImage());
+			
+			if (frame != null)
+			{
+				frameSequence = frame.getSequence();
+				frameTime = frame.getTime();
+			}
+			
+			return found;
+		}
 	}
 	
 	@Override
 	public boolean detectMarkers(Mat frame)
 	{
+		// Frame of the supplied image is not known.
+		frameSequence = frameTime = 0;
+
 		if (frame == null) return false;
 		
 		// Create empty Mat to receive the grayscale input Mat (image).
@@ -82,6 +96,18 @@ public class ArucoMarkers implements ArucoMarkersInterface
 		return true;
 	}
 
+	@Override
+	public long getFrameSequence()
+	{
+		return frameSequence;
+	}
+
+	@Override
+	public long getFrameTime()
+	{
+		return frameTime;
+	}
+
 	@Override
 	public int getMarkerCount()
 	{
@@ -25,6 +25,21 @@ public interface ArucoMarkersInterface
 	 */
 	public boolean detectMarkers();
 	
+	/**
+	 * Get the sequence number of the video frame used in the last call to
+	 * detectMarkers().
+	 * @return Sequence number or 0 if the image was supplied by the caller.
+	 */
+	public long getFrameSequence();
+	
+	/**
+	 * Get the decode time of the video frame used in the last call to
+	 * detectMarkers(), to tell how old the detected positions are.
+	 * @return System.nanoTime() when decoded or 0 if the image was supplied
+	 * by the caller.
+	 */
+	public long getFrameTime();
+	
 	/**
 	 * Get the number of markers detected on last call to 
 	 * detectMarkers().
@@ -21,6 +21,7 @@ public class FaceDetection implements FaceDetectionInterface
 	private CascadeClassifier	profileCascade = new CascadeClassifier();
 	
 	private Rect[] 				facesArray = null;
+	private long				frameSequence, frameTime;
 	
 	private FaceDetection()
 	{
@@ -58,9 +59,19 @@ public class FaceDetection implements FaceDetectionInterface
 	@Override
 	public boolean detectFaces()
 	{
-		Mat image = TelloCamera.getInstance().getImage();
-		
-		return detectFaces(image);	
+		// Detect on the shared frame, detection only reads the image.
+		try (Frame frame = TelloCamera.getInstance().leaseFrame())
+		{
+			boolean found = detectFaces(frame == null ? null : frame.getImage());
+
+			if (frame != null)
+			{
+				frameSequence = frame.getSequence();
+				frameTime = frame.getTime();
+			}
+
+			return found;
+		}
 	}
 
 	@Override
@@ -70,6 +81,9 @@ public class FaceDetection implements FaceDetectionInterface
 		Mat 				grayFrame = new Mat();
 		int 				absoluteFaceSize = 0;
 		
+		// Frame of the supplied image is not known.
+		frameSequence = frameTime = 0;
+		
 		if (image == null) return false;
 		
 		logger.finer("detectFaces");
@@ -111,6 +125,18 @@ public class FaceDetection implements FaceDetectionInterface
 		return true;
 	}
 
+	@Override
+	public long getFrameSequence()
+	{
+		return frameSequence;
+	}
+
+	@Override
+	public long getFrameTime()
+	{
+		return frameTime;
+	}
+
 	@Override
 	public int getFaceCount()
 	{
@@ -22,6 +22,21 @@ public interface FaceDetectionInterface
 	 */
 	public boolean detectFaces();
 	
+	/**
+	 * Get the sequence number of the video frame used in the last call to
+	 * detectFaces().
+	 * @return Sequence number or 0 if the image was supplied by the caller.
+	 */
+	public long getFrameSequence();
+	
+	/**
+	 * Get the decode time of the video frame used in the last call to
+	 * detectFaces(), to tell how old the detected faces are.
+	 * @return System.nanoTime() when decoded or 0 if the image was supplied
+	 * by the caller.
+	 */
+	public long getFrameTime();
+	
 	/**
 	 * Get the number of faces detected in the last call to
 	 * detectFaces().
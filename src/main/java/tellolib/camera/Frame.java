@@ -0,0 +1,115 @@
+package tellolib.camera;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opencv.core.Mat;
+
+/**
+ * A video frame leased from a FrameRing. The image is shared with the
+ * ring and other consumers, not copied, so it must be treated as read only
+ * and the lease closed when done, after which the ring reuses the frame.
+ * Use clone() on the image to keep it or change it.
+ * <p>
+ * Every lease of a frame returns the same Frame object and close() only
+ * takes one lease off its count, so each lease must be closed exactly once.
+ * Unlike other AutoCloseable classes a second close() is not ignored: it
+ * drops a lease another consumer holds and lets the capture thread write
+ * over the image while that consumer is still reading it. Use
+ * try-with-resources and don't close the frame inside the block.
+ * <p>
+ * Each frame carries the sequence number of its image in the video stream
+ * and the time it was decoded, so consumers can tell how old an image is,
+ * whether they skipped any, and which telemetry sample it goes with.
+ * <pre>
+ * try (Frame frame = camera.leaseFrame())
+ * {
+ *     if (frame != null) detect(frame.getImage());
+ * }
+ * </pre>
+ */
+public final class Frame implements AutoCloseable
+{
+	// Reference count: -1 while the capture thread writes the image, then
+	// 1 for the ring while the frame is the latest plus 1 for each lease.
+	// 0 when free.
+	final AtomicInteger		refs = new AtomicInteger();
+
+	private final FrameRing	ring;
+	final Mat				image = new Mat();
+
+	// Set by the writer before the frame is published.
+	long					sequence, time;
+
+	Frame(FrameRing ring)
+	{
+		this.ring = ring;
+	}
+
+	/**
+	 * Returns the frame image. Do not modify it or use it after close().
+	 * @return The image.
+	 */
+	public Mat getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * Returns the sequence number of the image in the video stream, counting
+	 * every decoded image from 1, including dropped ones.
+	 * @return Sequence number.
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Returns the time the image was decoded.
+	 * @return System.nanoTime() when the decoder returned the image.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns the time since the image was decoded.
+	 * @return Age in milliseconds.
+	 */
+	public long getAgeMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time);
+	}
+
+	/**
+	 * Return the frame to the ring. Call exactly once per lease, see the
+	 * class description.
+	 */
+	@Override
+	public void close()
+	{
+		release();
+	}
+
+	// Add a lease for another consumer of a frame already held.
+	Frame retain()
+	{
+		refs.incrementAndGet();
+		return this;
+	}
+
+	// Give this frame the sequence number and time of the frame its image
+	// was made from.
+	void copyTimeFrom(Frame source)
+	{
+		sequence = source.sequence;
+		time = source.time;
+	}
+
+	void release()
+	{
+		if (refs.decrementAndGet() == 0) ring.freed(this);
+	}
+}
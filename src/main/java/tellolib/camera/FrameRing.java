@@ -0,0 +1,136 @@
+package tellolib.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed pool of preallocated frames passed from the video capture thread
+ * to consumers without copying. The capture thread writes each image into
+ * a free frame and publishes it as the latest; consumers lease the latest
+ * frame, which keeps it from being reused until they close the lease.
+ * <p>
+ * The capture thread never waits: if every frame is leased or latest it
+ * drops the image and counts it. With one frame being written and one
+ * latest, a ring of n frames lets n - 2 leases be held at once without
+ * drops.
+ */
+public class FrameRing
+{
+	/**
+	 * Default number of frames.
+	 */
+	public static final int			DEFAULT_SIZE = 4;
+
+	private final Frame[]			frames;
+	private volatile Frame			latest;
+	private volatile boolean		closed;
+
+	// Only used by the capture thread.
+	private int						next;
+
+	private final AtomicLong		dropped = new AtomicLong();
+
+	/**
+	 * Create a ring.
+	 * @param size Number of frames, at least 2.
+	 */
+	public FrameRing(int size)
+	{
+		if (size < 2) throw new IllegalArgumentException("size must be at least 2");
+
+		frames = new Frame[size];
+
+		for (int i = 0; i < size; i++) frames[i] = new Frame(this);
+	}
+
+	/**
+	 * Take a free frame to write the next image into. Capture thread only.
+	 * @return Frame, or null if all frames are in use and the image must be dropped.
+	 */
+	public Frame acquire()
+	{
+		if (closed) return null;
+
+		for (int i = 0; i < frames.length; i++)
+		{
+			Frame frame = frames[next];
+
+			next = (next + 1) % frames.length;
+
+			if (frame.refs.compareAndSet(0, -1)) return frame;
+		}
+
+		dropped.incrementAndGet();
+
+		return null;
+	}
+
+	/**
+	 * Publish a written frame as the latest, releasing the previous latest.
+	 * Capture thread only.
+	 * @param frame Frame from acquire().
+	 */
+	public void publish(Frame frame)
+	{
+		frame.refs.set(1);
+
+		Frame previous = latest;
+
+		latest = frame;
+
+		if (previous != null) previous.release();
+	}
+
+	/**
+	 * Lease the latest frame. The caller must close the lease exactly once.
+	 * @return Latest frame, null if none yet.
+	 */
+	public Frame lease()
+	{
+		while (true)
+		{
+			Frame frame = latest;
+
+			if (frame == null || closed) return null;
+
+			int refs = frame.refs.get();
+
+			// The count is above 0 only while the image is complete. If the
+			// frame was rewritten since latest was read the lease gets the
+			// newer image, still complete. Else read latest again.
+			if (refs > 0 && frame.refs.compareAndSet(refs, refs + 1)) return frame;
+		}
+	}
+
+	/**
+	 * Returns the number of images dropped because no frame was free.
+	 * @return Drop count.
+	 */
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Release the frame images. Frames still leased are released when
+	 * their lease is closed.
+	 */
+	public void close()
+	{
+		closed = true;
+
+		Frame previous = latest;
+
+		latest = null;
+
+		if (previous != null) previous.release();
+
+		for (Frame frame : frames)
+			if (frame.refs.compareAndSet(0, -1)) frame.image.release();
+	}
+
+	// Called when a frame's count drops to 0.
+	void freed(Frame frame)
+	{
+		if (closed && frame.refs.compareAndSet(0, -1)) frame.image.release();
+	}
+}
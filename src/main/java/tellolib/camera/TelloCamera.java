@@ -1,11 +1,17 @@
 package tellolib.camera;
 
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.Toolkit;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 import javax.swing.ImageIcon;
@@ -24,8 +30,10 @@ import org.opencv.highgui.HighGui;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
+import tellolib.camera.VideoStage.DropPolicy;
 import tellolib.communication.TelloConnection;
 import tellolib.drone.TelloDrone;
+import tellolib.metrics.LatencyHistogram;
 
 /**
  * Convenience functions for Tello camera.
@@ -33,14 +41,35 @@ import tellolib.drone.TelloDrone;
 public class TelloCamera implements TelloCameraInterface
 {
 	private final 				Logger logger = Logger.getLogger("Tello");
+	
+	// Size of the images sent by the drone.
+	private static final int	NATIVE_WIDTH = 960, NATIVE_HEIGHT = 720;
 
-	private boolean				recording;
+	private volatile boolean	recording;
 	private Thread				videoCaptureThread;
 	private VideoCapture		camera;
-	private Mat					image;
+	private FrameRing			frames, annotatedFrames;
+	private VideoRelay			relay;
+	private Object				recordLock = new Object();
+	
+	// Video pipeline stages after decode, which runs on the capture thread.
+	private final VideoStage	annotateStage = new VideoStage("VideoAnnotate", 2, DropPolicy.DROP_OLDEST, this::annotate),
+								displayStage = new VideoStage("VideoDisplay", 2, DropPolicy.DROP_OLDEST, this::display),
+								recordStage = new VideoStage("VideoRecord", 4, DropPolicy.DROP_NEWEST, this::record);
+	private final LatencyHistogram	decodeLatency = new LatencyHistogram("video decode"),
+									frameLatency = new LatencyHistogram("video frame age");
+	private volatile long		decodedFrames;
+	
+	// Sequence number and time of the image last returned by getImage() on
+	// each thread.
+	private final ThreadLocal<long[]>	imageTime = ThreadLocal.withInitial(() -> new long[2]);
 	private VideoWriter			videoWriter;
-	private Dimension 			screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-	private Size				videoFrameSize = new Size(screenSize.width - 400, screenSize.height - 100);
+	// Size of the live window and recording images, null for the native size.
+	// Frames for detection are always at the native size.
+	private volatile Size		videoFrameSize;
+	private Size				recordFrameSize;
+	private Mat					recordImage = new Mat();
+	private boolean				headless = GraphicsEnvironment.isHeadless();
 	private double				videoFrameRate = 30;
 	private SimpleDateFormat	df = new SimpleDateFormat("yyyy-MM-dd.HHmmss");
 	private JFrame				jFrame;
@@ -61,8 +90,6 @@ public class TelloCamera implements TelloCameraInterface
 	{
 		// Load OpenCV library.
 		System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-		
-		image = new Mat();
 	}
     
 	private static class SingletonHolder 
@@ -86,20 +113,62 @@ public class TelloCamera implements TelloCameraInterface
 		
 		if (camera != null) return;
 		
+		if (liveWindow && headless)
+		{
+			logger.warning("No live window in headless mode");
+			liveWindow = false;
+		}
+		
 		// Create VideoCapture object to accept video feed from drone.
 		camera = new VideoCapture();
 		
 	 	camera.setExceptionMode(true);
 
+	 	// Receive video packets with the relay, which can record the raw stream,
+	 	// and have the capture object listen for the packets it forwards. If
+	 	// the relay can't open the video port the capture object listens there.
+	 	String source = "udp://0.0.0.0:" + Integer.toString(TelloDrone.UDP_VIDEO_PORT);
+	 	
+	 	relay = new VideoRelay(TelloDrone.UDP_VIDEO_PORT, VideoRelay.DEFAULT_RELAY_PORT);
+	 	
+	 	try
+	 	{
+	 		relay.start();
+	 		source = "udp://" + relay.getRelayAddress().getAddress().getHostAddress() + ":" + relay.getRelayAddress().getPort();
+	 	}
+	 	catch (IOException e)
+	 	{
+	 		logger.warning("video relay failed, raw recording not available: " + e.getMessage());
+	 		relay = null;
+	 	}
+
 	 	// Start capture object listening for video packets.
-		camera.open("udp://0.0.0.0:" + Integer.toString(TelloDrone.UDP_VIDEO_PORT), Videoio.CAP_FFMPEG);
+		camera.open(source, Videoio.CAP_FFMPEG);
 		
 		logger.fine("video camera open:" + camera.isOpened());
 
+		// Frames held: decoded, one written and one latest, two queued and
+		// one annotating, the rest leased by detectors. Annotated, one
+		// written and one latest, three displaying, five recording.
+		frames = new FrameRing(FrameRing.DEFAULT_SIZE + 2);
+		annotatedFrames = new FrameRing(10);
+		
+		annotateStage.start();
+		displayStage.start();
+		recordStage.start();
+
 		// Create window to display live video feed.
 
 		if (liveWindow)
 		{
+			// Size the window to the screen unless set by the caller.
+			if (videoFrameSize == null)
+			{
+				Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+				
+				videoFrameSize = new Size(screenSize.width - 400, screenSize.height - 100);
+			}
+			
 			// Create window and image display component using Java Swing library.
 	        jFrame = new JFrame("Tello Controller Test");
 	        jFrame.setPreferredSize(new Dimension((int) videoFrameSize.width, (int) videoFrameSize.height));
@@ -123,6 +192,8 @@ public class TelloCamera implements TelloCameraInterface
 
 		if (recording) stopRecording();
 		
+		// The relay keeps forwarding until the capture thread has ended, a
+		// read waiting for packets can't be interrupted.
 		if (videoCaptureThread != null)
 		{
 			logger.fine("stopping video capture thread");
@@ -137,15 +208,28 @@ public class TelloCamera implements TelloCameraInterface
 			} catch (Exception e) {e.printStackTrace();}
 		}
 		
+		if (relay != null)
+		{
+			relay.stop();
+			relay = null;
+		}
+		
 		if (jFrame != null) 
 		{
 			jFrame.setVisible(false);
 			jFrame.dispose();
 		}
 		
+		annotateStage.stop();
+		displayStage.stop();
+		recordStage.stop();
+		
+		for (VideoStage stage : getVideoStages()) logger.fine(stage.toString());
+		
 		camera.release();
-		image.release();
-		image = null;
+		frames.close();
+		annotatedFrames.close();
+		logger.fine("frames decoded: " + decodedFrames + " dropped: " + frames.getDropped() + " " + frameLatency);
 		camera = null;
 	}
 	
@@ -153,18 +237,83 @@ public class TelloCamera implements TelloCameraInterface
 	public Mat getImage()
 	{
 		// Make a copy of the current image and return to the caller. This allows
-		// the caller to work with the copy while the the internal image in this
-		// class is continues to be updated by the video processing thread. The
-		// synchronized key word prevents the processing thread from changing
-		// the internal image while we are making the copy.
+		// the caller to work with the copy while the internal image in this
+		// class continues to be updated by the video processing thread. The
+		// lease keeps the processing thread from reusing the frame while we
+		// are making the copy.
 		
-	    synchronized (lockObj) 
-	    {
-	    	if (image == null)
-	    		return null;
-	    	else
-	    		return image.clone();
-	    }
+		try (Frame frame = leaseFrame())
+		{
+			if (frame == null)
+				return null;
+			else
+			{
+				long[] time = imageTime.get();
+				
+				time[0] = frame.getSequence();
+				time[1] = frame.getTime();
+				
+				return frame.getImage().clone();
+			}
+		}
+	}
+	
+	@Override
+	public long getImageSequence()
+	{
+		return imageTime.get()[0];
+	}
+	
+	@Override
+	public long getImageTime()
+	{
+		return imageTime.get()[1];
+	}
+
+	@Override
+	public Frame leaseFrame()
+	{
+		FrameRing frames = this.frames;
+		
+		if (frames == null) return null;
+		
+		Frame frame = frames.lease();
+		
+		if (frame != null) frameLatency.recordSince(frame.getTime());
+		
+		return frame;
+	}
+	
+	@Override
+	public List<VideoStage> getVideoStages()
+	{
+		return Arrays.asList(annotateStage, displayStage, recordStage);
+	}
+	
+	@Override
+	public LatencyHistogram getDecodeLatency()
+	{
+		return decodeLatency;
+	}
+	
+	@Override
+	public LatencyHistogram getFrameLatency()
+	{
+		return frameLatency;
+	}
+	
+	@Override
+	public long getDecodedFrames()
+	{
+		return decodedFrames;
+	}
+	
+	@Override
+	public long getDroppedFrames()
+	{
+		FrameRing frames = this.frames;
+		
+		return frames == null ? 0 : frames.getDropped();
 	}
 
 	// Thread to read the images of the video stream and process them
@@ -186,46 +335,39 @@ public class TelloCamera implements TelloCameraInterface
 			
 	    	try
 	    	{
-	    		// Loop reading images from the video feed storing the current image
-	    		// in the image variable.
+	    		// Loop reading images from the video feed publishing the current image
+	    		// in the frame ring.
 	    		
 	    		while (!isInterrupted())
 	    		{
-	    		    camera.read(imageRaw);
-	    			
-	    			synchronized (lockObj) 
-	    			{
-		    		    // Resize raw image to window (frame) size.
-	    				
-	    				Imgproc.resize(imageRaw, image, videoFrameSize);
-	
-	    		    	// Draw target rectangles/contours on image.
+	    		    // Take a free frame and decode into it at the native size, any
+	    		    // scaling for display or recording is done by the annotate stage.
+	    		    // If consumers hold every frame decode into a scratch image and
+	    		    // drop it.
+	    		    Frame frame = frames.acquire();
 	    		    
-		    			if (targetRectangles != null)
-		    				for (Rect rect: targetRectangles) 
-		    					Imgproc.rectangle(image, 
-		    							new Point(rect.x, rect.y), 
-		    							new Point(rect.x + rect.width, rect.y +  rect.height), 
-		    							targetColor, targetWidth);
-		    			
-		    			if (contours != null) Imgproc.drawContours(image, contours, -1, contourColor, contourWidth);
-	
-		    			// Draw status bar text on image.
-		    			
-		    			if (statusBar != null && statusBarMethod == null)
-		    				Imgproc.putText(image, statusBar, new Point(0, image.height() - 25), Imgproc.FONT_HERSHEY_PLAIN, 
-		    						1.5, new Scalar(255, 255, 255), 2, Imgproc.FILLED);
-	
-		    			if (statusBarMethod != null)
-		    				Imgproc.putText(image, statusBarMethod.get(), new Point(0, image.height() - 25), Imgproc.FONT_HERSHEY_PLAIN, 
-		    						1.5, new Scalar(255, 255, 255), 2, Imgproc.FILLED);
-	    			}
+	    		    long start = System.nanoTime();
+	    		    
+	    		    camera.read(frame == null ? imageRaw : frame.getImage());
+	    		    
+	    		    // Number and time the image as soon as it is decoded, dropped
+	    		    // images are numbered too so consumers can see the gap.
+	    		    long time = System.nanoTime(), sequence = ++decodedFrames;
+	    		    
+	    		    decodeLatency.record(time - start);
+	    		    
+	    		    if (frame == null) continue;
+	    		    
+	    		    frame.sequence = sequence;
+	    		    frame.time = time;
 	    		
-	    			// Write image to live window if open.
-	    		    if (jFrame != null)	updateLiveWindow(image);
+	    			// Publish as the latest image, the frame is read only from here on.
+	    			frames.publish(frame);
 	    			
-	    			// Write image to recording file if recording.
-	    			if (recording) videoWriter.write(image);
+	    			// Overlays are drawn on a copy for the live window and recording
+	    			// by the annotate stage, so slow display or recording never
+	    			// delays reading the stream.
+	    			if (jFrame != null || recording) annotateStage.offer(frame.retain());
 	    		}
 	    	}
 	    	catch (Exception e) 
@@ -246,7 +388,6 @@ public class TelloCamera implements TelloCameraInterface
 	{
 		String	fileName = null;
 		boolean	result = false;
-		Mat		image;
 		
 		if (camera == null) 
 		{
@@ -254,27 +395,142 @@ public class TelloCamera implements TelloCameraInterface
 			return result;
 		}
 		
-		// Get a copy of the current image to work with.
-		image = getImage();
+		// Lease the current image as shown in the live window if annotated,
+		// imwrite only reads it so no copy is needed.
+		FrameRing annotatedFrames = this.annotatedFrames;
+		Frame annotated = annotatedFrames == null || (jFrame == null && !recording) ? null : annotatedFrames.lease();
 		
-		if(image != null && !image.empty())
+		try (Frame frame = annotated != null ? annotated : leaseFrame())
 		{
-			fileName = folder + "\\" + df.format(new Date()) + ".jpg";
-			
-			logger.info("h=" + image.height() + ";w=" + image.width());
+			Mat image = frame == null ? null : frame.getImage();
 			
-			if (Imgcodecs.imwrite(fileName, image))
+			if(image != null && !image.empty())
 			{
-				logger.fine("Picture saved to " + fileName);
-				result = true;
+				fileName = folder + "\\" + df.format(new Date()) + ".jpg";
+				
+				logger.info("h=" + image.height() + ";w=" + image.width());
+				
+				if (Imgcodecs.imwrite(fileName, image))
+				{
+					logger.fine("Picture saved to " + fileName);
+					result = true;
+				} else
+					logger.warning("Picture file save failed");
 			} else
-				logger.warning("Picture file save failed");
-		} else
-			logger.warning("Take Picture failed: image not available");
+				logger.warning("Take Picture failed: image not available");
+		}
 		
 		return result;
 	}
 
+	// Annotate stage, copy the frame scaled to the live window and recording
+	// size and draw targets, contours and status bar on the copy, then pass it
+	// to display and recording.
+	private void annotate(Frame frame)
+	{
+		Frame annotated = annotatedFrames.acquire();
+		
+		// Every annotated frame is still held by display or recording.
+		if (annotated == null)
+		{
+			annotateStage.dropped();
+			return;
+		}
+		
+		Mat source = frame.getImage(), image = annotated.getImage();
+		Size size = videoFrameSize;
+		double scaleX = 1, scaleY = 1;
+		
+		if (size == null || (size.width == source.width() && size.height == source.height()))
+			source.copyTo(image);
+		else
+		{
+			Imgproc.resize(source, image, size);
+			
+			scaleX = size.width / source.width();
+			scaleY = size.height / source.height();
+		}
+		
+		annotated.copyTimeFrom(frame);
+		
+		synchronized (lockObj) 
+		{
+	    	// Draw target rectangles/contours on image. They are located in the
+			// native size image the detectors work on, so scale them to the copy.
+	    
+			if (targetRectangles != null)
+				for (Rect rect: targetRectangles) 
+					Imgproc.rectangle(image, 
+							new Point(rect.x * scaleX, rect.y * scaleY), 
+							new Point((rect.x + rect.width) * scaleX, (rect.y + rect.height) * scaleY), 
+							targetColor, targetWidth);
+			
+			if (contours != null) 
+			{
+				List<MatOfPoint> scaled = contours;
+				
+				if (scaleX != 1 || scaleY != 1)
+				{
+					scaled = new ArrayList<MatOfPoint>(contours.size());
+					
+					for (MatOfPoint contour : contours)
+					{
+						MatOfPoint points = new MatOfPoint();
+						
+						Core.multiply(contour, new Scalar(scaleX, scaleY), points);
+						scaled.add(points);
+					}
+				}
+				
+				Imgproc.drawContours(image, scaled, -1, contourColor, contourWidth);
+			}
+
+			// Draw status bar text on image.
+			
+			if (statusBar != null && statusBarMethod == null)
+				Imgproc.putText(image, statusBar, new Point(0, image.height() - 25), Imgproc.FONT_HERSHEY_PLAIN, 
+						1.5, new Scalar(255, 255, 255), 2, Imgproc.FILLED);
+
+			if (statusBarMethod != null)
+				Imgproc.putText(image, statusBarMethod.get(), new Point(0, image.height() - 25), Imgproc.FONT_HERSHEY_PLAIN, 
+						1.5, new Scalar(255, 255, 255), 2, Imgproc.FILLED);
+		}
+		
+		annotatedFrames.publish(annotated);
+		
+		// Write image to live window if open.
+	    if (jFrame != null) displayStage.offer(annotated.retain());
+		
+		// Write image to recording file if recording.
+		if (recording) recordStage.offer(annotated.retain());
+	}
+	
+	// Display stage.
+	private void display(Frame frame)
+	{
+		if (jFrame != null) updateLiveWindow(frame.getImage());
+	}
+	
+	// Record stage.
+	private void record(Frame frame)
+	{
+		synchronized (recordLock)
+		{
+			if (!recording) return;
+			
+			Mat image = frame.getImage();
+			
+			// The live window size may have changed since recording started.
+			if (image.width() != recordFrameSize.width || image.height() != recordFrameSize.height)
+			{
+				Imgproc.resize(image, recordImage, recordFrameSize);
+				image = recordImage;
+			}
+			
+			videoWriter.write(image);
+		}
+	}
+
 	// Update the live window with the supplied image.
 	private void updateLiveWindow(Mat image)
 	{
@@ -308,19 +564,87 @@ public class TelloCamera implements TelloCameraInterface
 		// Determine folder and name of video file.
 		fileName = folder + "\\" + df.format(new Date()) + ".avi";
 
-		// Create a writer to write images to the file.
-		videoWriter = new VideoWriter(fileName, VideoWriter.fourcc('M', 'J', 'P', 'G'), videoFrameRate, 
-									  videoFrameSize, true);
+		// Set up the writer under the lock the record stage writes under.
+		synchronized (recordLock)
+		{
+			if (recording)
+			{
+				logger.warning("Video recording already started");
+				return result;
+			}
+			
+			// Record at the live window size if set, else at the native size.
+			recordFrameSize = videoFrameSize != null ? videoFrameSize : getImageSize();
+			
+			if (recordFrameSize.width == 0) recordFrameSize = new Size(NATIVE_WIDTH, NATIVE_HEIGHT);
+			
+			// Create a writer to write images to the file.
+			videoWriter = new VideoWriter(fileName, VideoWriter.fourcc('M', 'J', 'P', 'G'), videoFrameRate, 
+										  recordFrameSize, true);
+	
+			if (videoWriter != null && videoWriter.isOpened())
+			{
+				recording = result = true;
+			
+				logger.fine("Video recording started to " + fileName);
+			} else
+				logger.warning("Video recording failed");
+		}
+		
+		return result;
+	}
 
-		if (videoWriter != null && videoWriter.isOpened())
+	@Override
+	public boolean startRawRecording( String folder, boolean withSidecar )
+	{
+		VideoRelay relay = this.relay;
+		
+		if (relay == null) 
 		{
-			recording = result = true;
+			logger.warning("No video stream");
+			return false;
+		}
 		
-			logger.fine("Video recording started to " + fileName);
-		} else
-			logger.warning("Video recording failed");
+		Path file = Paths.get(folder, df.format(new Date()) + ".h264");
 		
-		return result;
+		try
+		{
+			relay.startRecording(file, withSidecar);
+			
+			logger.fine("Raw video recording started to " + file);
+			
+			return true;
+		}
+		catch (IOException e)
+		{
+			logger.warning("Raw video recording failed: " + e.getMessage());
+			
+			return false;
+		}
+	}
+	
+	@Override
+	public void stopRawRecording()
+	{
+		VideoRelay relay = this.relay;
+		
+		if (relay != null) relay.stopRecording();
+	}
+	
+	@Override
+	public boolean isRawRecording()
+	{
+		VideoRelay relay = this.relay;
+		
+		return relay != null && relay.isRecording();
+	}
+	
+	@Override
+	public void annotateRawRecording( String note )
+	{
+		VideoRelay relay = this.relay;
+		
+		if (relay != null) relay.annotate(note);
 	}
 
 	@Override
@@ -328,9 +652,14 @@ public class TelloCamera implements TelloCameraInterface
 	{
 		if (camera == null || !recording) return;
 
-		recording =  false;
-
-		videoWriter.release();
+		// Wait for a write in progress on the record stage.
+		synchronized (recordLock) 
+		{
+			if (!recording) return;
+			
+			recording = false;
+			videoWriter.release();
+		}
 		
 		logger.fine("Video recording stopped");
 	}
@@ -384,11 +713,11 @@ public class TelloCamera implements TelloCameraInterface
 	
 	public Size getImageSize()
 	{
-		synchronized(lockObj)
+		try (Frame frame = leaseFrame())
 		{
-			if (image == null) return new Size(0,0);
+			if (frame == null) return new Size(0,0);
 		
-			return new Size(image.width(), image.height());
+			return new Size(frame.getImage().width(), frame.getImage().height());
 		}
 	}
 
@@ -409,4 +738,16 @@ public class TelloCamera implements TelloCameraInterface
 	{
 		videoFrameSize = new Size(width, height);		
 	}
+
+	@Override
+	public void setHeadless( boolean headless )
+	{
+		this.headless = headless;
+	}
+
+	@Override
+	public boolean isHeadless()
+	{
+		return headless;
+	}
 }
@@ -1,6 +1,7 @@
 package tellolib.camera;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
 import org.opencv.core.Mat;
@@ -8,6 +9,8 @@ import org.opencv.core.MatOfPoint;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 
+import tellolib.metrics.LatencyHistogram;
+
 /**
  * Convenience functions for Tello camera.
  */
@@ -47,6 +50,37 @@ public interface TelloCameraInterface
    * Stop recording the video feed.
    */
   void stopRecording();
+
+  /**
+   * Record the H.264 stream from the drone as received, to a .h264 file in
+   * the named folder. Frames are not decoded or encoded, so recording costs
+   * next to no CPU and keeps the drone's full resolution, but the file has
+   * none of the targets or status bar drawn on the live window. Recording
+   * starts at the next key frame. Independent of startRecording().
+   * @param folder Location to save the video file.
+   * @param withSidecar True to also write a .h264.csv file listing the
+   * offset and time of each key frame and of notes from annotateRawRecording().
+   * @return True if recording started, false if failed.
+   */
+  boolean startRawRecording(String folder, boolean withSidecar);
+
+  /**
+   * Stop recording the H.264 stream.
+   */
+  void stopRawRecording();
+
+  /**
+   * Returns raw recording state.
+   * @return True if raw recording in progress, false if not.
+   */
+  boolean isRawRecording();
+
+  /**
+   * Add a note to the raw recording sidecar file at the current position
+   * in the video. Ignored if not raw recording with a sidecar.
+   * @param note Text of the note.
+   */
+  void annotateRawRecording(String note);
   
   /**
    * Returns recording state.
@@ -55,10 +89,72 @@ public interface TelloCameraInterface
   boolean isRecording();
 
   /**
-   * Returns the current image from the video feed.
+   * Returns a copy of the current image from the video feed, without the
+   * targets, contours and status bar drawn on the live window and recording.
    * @return The current image.
    */
   Mat getImage();
+
+  /**
+   * Returns the sequence number of the image last returned to the calling
+   * thread by getImage(). A gap from the previous image shows how many
+   * images were skipped.
+   * @return Sequence number, 0 if none.
+   */
+  long getImageSequence();
+
+  /**
+   * Returns the decode time of the image last returned to the calling
+   * thread by getImage(), to tell its age or find the telemetry sample
+   * received closest to it with TelemetryHistory.valueAt().
+   * @return System.nanoTime() when decoded, 0 if none.
+   */
+  long getImageTime();
+
+  /**
+   * Lease the current frame from the video feed without copying it. The
+   * image must not be modified and the lease must be closed exactly once
+   * when done, until then the frame is not reused for new images. Closing
+   * it twice releases a lease held by another consumer, see {@link Frame}.
+   * @return The current frame, null if none.
+   */
+  Frame leaseFrame();
+
+  /**
+   * Returns the number of video images dropped because consumers held
+   * every frame.
+   * @return Drop count.
+   */
+  long getDroppedFrames();
+
+  /**
+   * Returns the number of video images decoded, including dropped ones.
+   * This is also the sequence number of the latest image.
+   * @return Decode count.
+   */
+  long getDecodedFrames();
+
+  /**
+   * Time from decoding each image to a consumer leasing it, with
+   * leaseFrame(), getImage() or a detector.
+   * @return Latency histogram.
+   */
+  LatencyHistogram getFrameLatency();
+
+  /**
+   * Returns the video pipeline stages after decode: annotate, display and
+   * record, each a thread with its own queue, drop count and latencies.
+   * @return The stages.
+   */
+  List<VideoStage> getVideoStages();
+
+  /**
+   * Time taken by the decoder on the capture thread to return each image,
+   * including any wait for the rest of its packets. Frame ages from
+   * getFrameLatency() and the stages start when this ends.
+   * @return Latency histogram.
+   */
+  LatencyHistogram getDecodeLatency();
 	
   /**
    * Add a target rectangle to be drawn on the camera feed images.
@@ -109,11 +205,28 @@ public interface TelloCameraInterface
   public void setStatusBar(Supplier<String> method);
   
   /**
-   * Sets the starting video frame size for live window, pictures and recorded video.
-   * Must be called before startVideoCapture(). Resizing live window will change the
-   * video frame size.
+   * Sets the starting video frame size for live window, annotated pictures and
+   * recorded video. Must be called before startVideoCapture(). Resizing live window
+   * will change the video frame size. If not set the live window is sized to the
+   * screen and recordings are at the native size. Images for detection, getImage()
+   * and leaseFrame() are always at the native size sent by the drone.
    * @param width Width of frame in pixels.
    * @param height Height of frame in pixels.
    */
   public void setVideoFrameSize(int width, int height);
+  
+  /**
+   * Sets headless mode, in which no live window is opened and the screen is
+   * not queried, so video can be processed where no display is available.
+   * Defaults to true when Java runs headless. Must be called before
+   * startVideoCapture().
+   * @param headless True for headless mode.
+   */
+  public void setHeadless(boolean headless);
+  
+  /**
+   * Returns headless mode.
+   * @return True if headless.
+   */
+  public boolean isHeadless();
 }
@@ -0,0 +1,324 @@
+package tellolib.camera;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Receives the H.264 video stream from the drone and forwards each
+ * datagram unchanged to a loopback port where the decoder listens. While
+ * recording, the payloads are also appended to a file with a FileChannel,
+ * giving a raw Annex B .h264 file of the stream as sent by the drone, at
+ * its native resolution and without decoding or encoding any frame.
+ * <p>
+ * Recording starts at the next key frame, a datagram starting with an SPS
+ * NAL unit, so the file can be played from its start. An optional sidecar
+ * file lists the file offset and time of each key frame and of notes added
+ * with annotate(), for lining events up with the video.
+ */
+public class VideoRelay
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	/**
+	 * Default loopback port the stream is forwarded to.
+	 */
+	public static final int		DEFAULT_RELAY_PORT = 11112;
+
+	private static final int	NAL_SPS = 7;
+
+	private final int			videoPort;
+	private final InetSocketAddress	relayAddress;
+
+	private DatagramChannel		channel;
+	private Thread				thread;
+	private final ByteBuffer	buffer = ByteBuffer.allocateDirect(65536);
+
+	// Recording state, guarded by recordLock.
+	private final Object		recordLock = new Object();
+	private FileChannel			file;
+	private BufferedWriter		sidecar;
+	private volatile boolean	recording;
+	private boolean				keyFrameSeen;
+	private long				recordStart;
+
+	private final AtomicLong	packets = new AtomicLong(), bytes = new AtomicLong(), recordedBytes = new AtomicLong();
+
+	/**
+	 * Create a relay.
+	 * @param videoPort Port the drone sends video to.
+	 * @param relayPort Loopback port to forward video to.
+	 */
+	public VideoRelay(int videoPort, int relayPort)
+	{
+		this.videoPort = videoPort;
+
+		relayAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), relayPort);
+	}
+
+	/**
+	 * Returns the address the video is forwarded to.
+	 * @return Loopback address and relay port.
+	 */
+	public InetSocketAddress getRelayAddress()
+	{
+		return relayAddress;
+	}
+
+	/**
+	 * Open the video port and start forwarding.
+	 * @throws IOException If the video port can't be opened.
+	 */
+	public synchronized void start() throws IOException
+	{
+		if (thread != null) return;
+
+		channel = DatagramChannel.open();
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 1024);
+		channel.bind(new InetSocketAddress(videoPort));
+
+		thread = new Thread(this::run, "VideoRelay");
+		thread.setDaemon(true);
+		thread.start();
+
+		logger.fine("video relay " + videoPort + " to " + relayAddress);
+	}
+
+	/**
+	 * Stop forwarding and recording, close the video port.
+	 */
+	public synchronized void stop()
+	{
+		if (thread == null) return;
+
+		stopRecording();
+
+		try
+		{
+			channel.close();
+			thread.join(2000);
+		}
+		catch (IOException e) { logger.warning("video relay close failed: " + e.getMessage()); }
+		catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+		thread = null;
+		channel = null;
+
+		logger.fine(String.format("video relay stopped, %d packets, %d bytes", getPackets(), getBytes()));
+	}
+
+	/**
+	 * Start recording the stream to a file.
+	 * @param path File to write, replaced if it exists.
+	 * @param withSidecar True to also write a .csv sidecar file listing key
+	 * frames and notes.
+	 * @throws IOException If the file can't be created.
+	 */
+	public void startRecording(Path path, boolean withSidecar) throws IOException
+	{
+		synchronized (recordLock)
+		{
+			if (recording) stopRecording();
+
+			file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+									StandardOpenOption.TRUNCATE_EXISTING);
+
+			if (withSidecar)
+			{
+				sidecar = Files.newBufferedWriter(Paths.get(path.toString() + ".csv"), StandardCharsets.UTF_8);
+				sidecar.write("offset,millis,event");
+				sidecar.newLine();
+			}
+
+			keyFrameSeen = false;
+			recordedBytes.set(0);
+			recordStart = System.nanoTime();
+			recording = true;
+		}
+
+		logger.fine("raw video recording started to " + path);
+	}
+
+	/**
+	 * Stop recording.
+	 */
+	public void stopRecording()
+	{
+		synchronized (recordLock)
+		{
+			if (!recording) return;
+
+			recording = false;
+
+			closeFiles();
+		}
+
+		logger.fine("raw video recording stopped, " + recordedBytes.get() + " bytes");
+	}
+
+	/**
+	 * Returns recording state.
+	 * @return True if recording.
+	 */
+	public boolean isRecording()
+	{
+		return recording;
+	}
+
+	/**
+	 * Add a note to the sidecar file at the current position in the
+	 * recording. Ignored if not recording with a sidecar.
+	 * @param note Text of the note, commas and line breaks are replaced.
+	 */
+	public void annotate(String note)
+	{
+		synchronized (recordLock)
+		{
+			if (recording && sidecar != null) writeSidecar(note.replaceAll("[,\\r\\n]", " "));
+		}
+	}
+
+	/**
+	 * Number of datagrams forwarded.
+	 * @return Packet count.
+	 */
+	public long getPackets()
+	{
+		return packets.get();
+	}
+
+	/**
+	 * Number of bytes forwarded.
+	 * @return Byte count.
+	 */
+	public long getBytes()
+	{
+		return bytes.get();
+	}
+
+	/**
+	 * Number of bytes written to the current or last recording.
+	 * @return Byte count.
+	 */
+	public long getRecordedBytes()
+	{
+		return recordedBytes.get();
+	}
+
+	private void run()
+	{
+		DatagramChannel channel = this.channel;
+
+		try
+		{
+			while (true)
+			{
+				buffer.clear();
+				channel.receive(buffer);
+				buffer.flip();
+
+				int length = buffer.remaining();
+
+				channel.send(buffer, relayAddress);
+
+				packets.incrementAndGet();
+				bytes.addAndGet(length);
+
+				if (recording)
+				{
+					buffer.rewind();
+					record();
+				}
+			}
+		}
+		catch (ClosedChannelException e) {}
+		catch (IOException e) { logger.severe("video relay failed: " + e.getMessage()); }
+	}
+
+	// Append the datagram in buffer to the recording.
+	private void record()
+	{
+		synchronized (recordLock)
+		{
+			if (!recording) return;
+
+			boolean keyFrame = isKeyFrame(buffer);
+
+			if (!keyFrameSeen && !keyFrame) return;
+
+			keyFrameSeen = true;
+
+			try
+			{
+				if (keyFrame && sidecar != null) writeSidecar("keyframe");
+
+				while (buffer.hasRemaining()) recordedBytes.addAndGet(file.write(buffer));
+			}
+			catch (IOException e)
+			{
+				logger.severe("raw video recording failed: " + e.getMessage());
+				recording = false;
+				closeFiles();
+			}
+		}
+	}
+
+	// Close the recording files. Called holding recordLock.
+	private void closeFiles()
+	{
+		try
+		{
+			file.close();
+		}
+		catch (IOException e) { logger.warning("raw video recording close failed: " + e.getMessage()); }
+
+		try
+		{
+			if (sidecar != null) sidecar.close();
+		}
+		catch (IOException e) { logger.warning("raw video sidecar close failed: " + e.getMessage()); }
+
+		file = null;
+		sidecar = null;
+	}
+
+	private void writeSidecar(String event)
+	{
+		try
+		{
+			sidecar.write(recordedBytes.get() + "," + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recordStart) + "," + event);
+			sidecar.newLine();
+		}
+		catch (IOException e) { logger.warning("raw video sidecar write failed: " + e.getMessage()); }
+	}
+
+	// True if the datagram starts with an Annex B start code and an SPS NAL
+	// unit, which the drone sends ahead of each key frame.
+	private static boolean isKeyFrame(ByteBuffer data)
+	{
+		int p = data.position(), remaining = data.remaining();
+
+		if (remaining >= 5 && data.get(p) == 0 && data.get(p + 1) == 0 && data.get(p + 2) == 0 && data.get(p + 3) == 1)
+			return (data.get(p + 4) & 0x1f) == NAL_SPS;
+
+		if (remaining >= 4 && data.get(p) == 0 && data.get(p + 1) == 0 && data.get(p + 2) == 1)
+			return (data.get(p + 3) & 0x1f) == NAL_SPS;
+
+		return false;
+	}
+}
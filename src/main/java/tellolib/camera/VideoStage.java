@@ -0,0 +1,264 @@
+package tellolib.camera;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import tellolib.metrics.LatencyHistogram;
+
+/**
+ * One stage of the video pipeline: a thread taking leased frames from a
+ * bounded queue and handing each to an action. When the queue is full a
+ * new frame is dropped according to the stage's drop policy, so a slow
+ * stage never holds up the stage feeding it.
+ */
+public class VideoStage
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	/**
+	 * What to drop when a frame arrives and the queue is full.
+	 */
+	public enum DropPolicy
+	{
+		/**
+		 * Drop the oldest queued frame, for stages that should show the
+		 * latest image, such as a live window.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drop the arriving frame, keeping the queued frames in sequence.
+		 */
+		DROP_NEWEST
+	}
+
+	private static class Entry
+	{
+		final Frame	frame;
+		final long	queueTime;
+
+		Entry(Frame frame)
+		{
+			this.frame = frame;
+			queueTime = System.nanoTime();
+		}
+	}
+
+	private final String				name;
+	private final DropPolicy			dropPolicy;
+	private final Consumer<Frame>		action;
+	private final ArrayBlockingQueue<Entry>	queue;
+
+	private final LatencyHistogram		queueLatency, processLatency, frameLatency;
+	private final AtomicLong			processed = new AtomicLong(), dropped = new AtomicLong();
+
+	private Thread						thread;
+
+	/**
+	 * Create a stage.
+	 * @param name Stage name, also the thread name.
+	 * @param capacity Queue capacity.
+	 * @param dropPolicy What to drop when the queue is full.
+	 * @param action Processing of each frame, on the stage thread.
+	 */
+	VideoStage(String name, int capacity, DropPolicy dropPolicy, Consumer<Frame> action)
+	{
+		this.name = name;
+		this.dropPolicy = dropPolicy;
+		this.action = action;
+
+		queue = new ArrayBlockingQueue<>(capacity);
+		queueLatency = new LatencyHistogram(name + " queue");
+		processLatency = new LatencyHistogram(name + " process");
+		frameLatency = new LatencyHistogram(name + " frame age");
+	}
+
+	synchronized void start()
+	{
+		if (thread != null) return;
+
+		thread = new Thread(this::run, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	synchronized void stop()
+	{
+		if (thread == null) return;
+
+		thread.interrupt();
+
+		try
+		{
+			thread.join(2000);
+		}
+		catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+		thread = null;
+
+		Entry entry;
+
+		while ((entry = queue.poll()) != null) entry.frame.release();
+	}
+
+	/**
+	 * Queue a frame. The stage owns the lease from here and releases it
+	 * when processed or dropped.
+	 * @param frame Frame leased for this stage.
+	 */
+	void offer(Frame frame)
+	{
+		Entry entry = new Entry(frame);
+
+		while (!queue.offer(entry))
+		{
+			dropped.incrementAndGet();
+
+			if (dropPolicy == DropPolicy.DROP_NEWEST)
+			{
+				frame.release();
+				return;
+			}
+
+			Entry oldest = queue.poll();
+
+			if (oldest != null) oldest.frame.release();
+		}
+	}
+
+	/**
+	 * Count a frame the task dropped because it had no free frame to
+	 * process into.
+	 */
+	void dropped()
+	{
+		dropped.incrementAndGet();
+	}
+
+	private void run()
+	{
+		logger.fine(name + " stage started");
+
+		try
+		{
+			while (!Thread.currentThread().isInterrupted())
+			{
+				Entry entry = queue.take();
+				long start = System.nanoTime(), frameTime = entry.frame.getTime();
+
+				queueLatency.record(start - entry.queueTime);
+
+				try
+				{
+					action.accept(entry.frame);
+				}
+				catch (Exception e) { logger.warning(name + " stage failed: " + e.toString()); }
+				finally
+				{
+					entry.frame.release();
+				}
+
+				processLatency.recordSince(start);
+				frameLatency.recordSince(frameTime);
+				processed.incrementAndGet();
+			}
+		}
+		catch (InterruptedException e) {}
+
+		logger.fine(name + " stage ended");
+	}
+
+	/**
+	 * Returns the stage name.
+	 * @return The name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Returns the number of frames waiting.
+	 * @return Queue depth.
+	 */
+	public int getQueueDepth()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Returns the queue capacity.
+	 * @return Most frames that can wait.
+	 */
+	public int getCapacity()
+	{
+		return queue.size() + queue.remainingCapacity();
+	}
+
+	/**
+	 * Returns the drop policy.
+	 * @return The policy.
+	 */
+	public DropPolicy getDropPolicy()
+	{
+		return dropPolicy;
+	}
+
+	/**
+	 * Time frames waited in the queue.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getQueueLatency()
+	{
+		return queueLatency;
+	}
+
+	/**
+	 * Time the stage took to process each frame.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getProcessLatency()
+	{
+		return processLatency;
+	}
+
+	/**
+	 * Time from decoding each frame to the stage finishing with it, the end
+	 * to end latency of the pipeline up to this stage.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getFrameLatency()
+	{
+		return frameLatency;
+	}
+
+	/**
+	 * Returns the number of frames processed.
+	 * @return Processed count.
+	 */
+	public long getProcessed()
+	{
+		return processed.get();
+	}
+
+	/**
+	 * Returns the number of frames dropped because the queue was full or the
+	 * stage had no free frame to process into.
+	 * @return Drop count.
+	 */
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s: depth %d/%d, %d processed, %d dropped, queue p99 %.1f ms, process p99 %.1f ms, frame age p99 %.1f ms",
+							 name, getQueueDepth(), getCapacity(), getProcessed(), getDropped(),
+							 queueLatency.getPercentile(99) / 1e6, processLatency.getPercentile(99) / 1e6,
+							 frameLatency.getPercentile(99) / 1e6);
+	}
+}
@@ -0,0 +1,83 @@
+package tellolib.command;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes command text into a byte buffer without creating strings or
+ * arrays. Tello commands are plain ASCII, so each char is one byte.
+ */
+public final class CommandEncoder
+{
+  private CommandEncoder()
+  {
+  }
+
+  /**
+   * Write command text.
+   * @param buffer Buffer to write into at its position.
+   * @param text ASCII text.
+   */
+  public static void put(ByteBuffer buffer, String text)
+  {
+    for (int i = 0; i < text.length(); i++) buffer.put((byte) text.charAt(i));
+  }
+
+  /**
+   * Write an integer in decimal.
+   * @param buffer Buffer to write into at its position.
+   * @param value The value.
+   */
+  public static void putInt(ByteBuffer buffer, int value)
+  {
+    if (value < 0)
+    {
+      buffer.put((byte) '-');
+
+      // Negate as long so Integer.MIN_VALUE is written correctly.
+      putDigits(buffer, -(long) value);
+    }
+    else
+      putDigits(buffer, value);
+  }
+
+  /**
+   * Write a command with one numeric parameter, such as "forward 50".
+   * @param buffer Buffer to write into at its position.
+   * @param command Command name.
+   * @param value Parameter value.
+   */
+  public static void encode(ByteBuffer buffer, String command, int value)
+  {
+    put(buffer, command);
+    buffer.put((byte) ' ');
+    putInt(buffer, value);
+  }
+
+  /**
+   * Returns the number of bytes putInt() writes for a value.
+   * @param value The value.
+   * @return Byte count.
+   */
+  public static int intLength(int value)
+  {
+    long abs = Math.abs((long) value);
+    int length = value < 0 ? 2 : 1;
+
+    while (abs >= 10)
+    {
+      abs /= 10;
+      length++;
+    }
+
+    return length;
+  }
+
+  private static void putDigits(ByteBuffer buffer, long value)
+  {
+    long divisor = 1;
+
+    while (value / divisor >= 10) divisor *= 10;
+
+    for (; divisor > 0; divisor /= 10) buffer.put((byte) ('0' + value / divisor % 10));
+  }
+}
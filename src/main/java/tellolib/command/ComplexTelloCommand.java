@@ -25,14 +25,14 @@ public class ComplexTelloCommand extends AbstractTelloCommand
     
     if (o == null || getClass() != o.getClass()) return false;
     
-    BasicTelloCommand that = (BasicTelloCommand) o;
-    return Objects.equals(command, that.command);
+    ComplexTelloCommand that = (ComplexTelloCommand) o;
+    return Objects.equals(command, that.command) && Objects.equals(parameters, that.parameters);
   }
 
   @Override
   public int hashCode() 
   {
-    return Objects.hash(command);
+    return Objects.hash(command, parameters);
   }
 
   @Override
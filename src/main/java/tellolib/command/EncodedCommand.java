@@ -0,0 +1,140 @@
+package tellolib.command;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable command holding its text and the ASCII bytes sent to the
+ * drone, encoded once when created. Sending one creates no strings or
+ * arrays, which keeps polling and keepalive loops free of garbage.
+ * <p>
+ * Commands without parameters, such as "battery?" or "land", are interned:
+ * of() returns the same instance for the same text.
+ */
+public final class EncodedCommand implements TelloCommandInterface
+{
+  // Bound on interned commands in case of() is given arbitrary text.
+  private static final int MAX_CACHED = 256;
+
+  private static final ConcurrentHashMap<String, EncodedCommand> cache = new ConcurrentHashMap<>();
+
+  private final String command;
+  private final byte[] data;
+
+  private EncodedCommand(String command, byte[] data)
+  {
+    this.command = command;
+    this.data = data;
+  }
+
+  /**
+   * Returns the command for some text. Commands without parameters are
+   * taken from the cache.
+   * @param command Command text, such as TelloCommandValues.CURRENT_BATTERY.
+   * @return The command.
+   */
+  public static EncodedCommand of(String command)
+  {
+    if (command == null || command.isEmpty()) throw new IllegalArgumentException("command must not be empty");
+
+    EncodedCommand encoded = cache.get(command);
+
+    if (encoded != null) return encoded;
+
+    encoded = encode(command);
+
+    if (command.indexOf(' ') < 0 && cache.size() < MAX_CACHED)
+    {
+      EncodedCommand cached = cache.putIfAbsent(command, encoded);
+
+      if (cached != null) encoded = cached;
+    }
+
+    return encoded;
+  }
+
+  /**
+   * Returns a command with one numeric parameter, such as "forward 50".
+   * @param command Command name, such as TelloCommandValues.FORWARD.
+   * @param value Parameter value.
+   * @return The command.
+   */
+  public static EncodedCommand of(String command, int value)
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(command.length() + 1 + CommandEncoder.intLength(value));
+
+    CommandEncoder.encode(buffer, command, value);
+
+    return new EncodedCommand(command + " " + value, buffer.array());
+  }
+
+  /**
+   * Returns an encoded copy of any command.
+   * @param command The command.
+   * @return The command itself if already encoded.
+   */
+  public static EncodedCommand of(TelloCommandInterface command)
+  {
+    if (command instanceof EncodedCommand) return (EncodedCommand) command;
+
+    return of(command.composeCommand());
+  }
+
+  private static EncodedCommand encode(String command)
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(command.length());
+
+    CommandEncoder.put(buffer, command);
+
+    return new EncodedCommand(command, buffer.array());
+  }
+
+  @Override
+  public String composeCommand()
+  {
+    return command;
+  }
+
+  /**
+   * Returns the encoded length.
+   * @return Number of bytes.
+   */
+  public int length()
+  {
+    return data.length;
+  }
+
+  /**
+   * Write the encoded command.
+   * @param buffer Buffer to write into at its position.
+   */
+  public void writeTo(ByteBuffer buffer)
+  {
+    buffer.put(data);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) return true;
+
+    if (o == null || getClass() != o.getClass()) return false;
+
+    EncodedCommand that = (EncodedCommand) o;
+    return command.equals(that.command);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return command.hashCode();
+  }
+
+  @Override
+  public String toString()
+  {
+    return "EncodedCommand{"
+        + "command='" + command + '\''
+        + '}';
+  }
+}
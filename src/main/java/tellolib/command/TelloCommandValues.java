@@ -126,7 +126,7 @@ public class TelloCommandValues
   public static final String STOP = "stop";
 
   /**
-   * Set current speed as xx (xx = 1-100 cm/s ).
+   * Set current speed as xx (xx = 10-100 cm/s ).
    */
   public static final String SPEED = "speed";
 
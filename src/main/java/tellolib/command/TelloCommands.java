@@ -0,0 +1,382 @@
+package tellolib.command;
+
+import tellolib.exception.TelloCommandException;
+
+/**
+ * Builds commands checked against the parameter ranges documented in the
+ * Tello SDK, so invalid commands are rejected locally instead of after a
+ * round trip to the drone that returns "out of range". All checks are on
+ * integers, no command is built unless it passes.
+ * <p>
+ * validate() applies the same checks to command text composed elsewhere.
+ * Commands it does not know are passed as is.
+ */
+public final class TelloCommands
+{
+  /**
+   * Move distance range, cm.
+   */
+  public static final int MIN_DISTANCE = 20, MAX_DISTANCE = 500;
+
+  /**
+   * Rotation range, degrees.
+   */
+  public static final int MIN_ANGLE = 1, MAX_ANGLE = 3600;
+
+  /**
+   * Speed range of speed, go and jump commands, cm/s.
+   */
+  public static final int MIN_SPEED = 10, MAX_SPEED = 100;
+
+  /**
+   * Speed range of curve commands, cm/s.
+   */
+  public static final int MAX_CURVE_SPEED = 60;
+
+  /**
+   * Coordinate range of go, jump and curve commands, cm.
+   */
+  public static final int MAX_COORDINATE = 500;
+
+  /**
+   * Coordinates of a point may not all be within this distance of zero, cm.
+   */
+  public static final int DEAD_BOX = 20;
+
+  /**
+   * Arc radius range of curve commands, cm.
+   */
+  public static final int MIN_RADIUS = 50, MAX_RADIUS = 1000;
+
+  /**
+   * Mission pad id range.
+   */
+  public static final int MIN_PAD = 1, MAX_PAD = 8;
+
+  /**
+   * rc channel value range.
+   */
+  public static final int MAX_RC = 100;
+
+  private TelloCommands()
+  {
+  }
+
+  /**
+   * Build a move command.
+   * @param direction TelloCommandValues UP, DOWN, LEFT, RIGHT, FORWARD or BACK.
+   * @param distance Distance (20-500 cm).
+   * @return The command.
+   */
+  public static EncodedCommand move(String direction, int distance)
+  {
+    if (!isMove(direction)) throw new TelloCommandException("not a move command: " + direction);
+
+    checkRange("distance", distance, MIN_DISTANCE, MAX_DISTANCE);
+
+    return EncodedCommand.of(direction, distance);
+  }
+
+  /**
+   * Build a rotate command.
+   * @param direction TelloCommandValues CW or CCW.
+   * @param angle Angle (1-3600 degrees).
+   * @return The command.
+   */
+  public static EncodedCommand rotate(String direction, int angle)
+  {
+    if (!TelloCommandValues.CW.equals(direction) && !TelloCommandValues.CCW.equals(direction))
+      throw new TelloCommandException("not a rotate command: " + direction);
+
+    checkRange("angle", angle, MIN_ANGLE, MAX_ANGLE);
+
+    return EncodedCommand.of(direction, angle);
+  }
+
+  /**
+   * Build a speed command.
+   * @param speed Speed (10-100 cm/s).
+   * @return The command.
+   */
+  public static EncodedCommand speed(int speed)
+  {
+    checkRange("speed", speed, MIN_SPEED, MAX_SPEED);
+
+    return EncodedCommand.of(TelloCommandValues.SPEED, speed);
+  }
+
+  /**
+   * Build a go command relative to the current position.
+   * @param x X offset (-500 to 500 cm).
+   * @param y Y offset (-500 to 500 cm).
+   * @param z Z offset (-500 to 500 cm).
+   * @param speed Speed (10-100 cm/s).
+   * @return The command.
+   */
+  public static EncodedCommand go(int x, int y, int z, int speed)
+  {
+    checkGo(x, y, z, speed);
+
+    return EncodedCommand.of(TelloCommandValues.GO + " " + x + " " + y + " " + z + " " + speed);
+  }
+
+  /**
+   * Build a go command relative to a mission pad.
+   * @param x X coordinate (-500 to 500 cm).
+   * @param y Y coordinate (-500 to 500 cm).
+   * @param z Z coordinate (-500 to 500 cm).
+   * @param speed Speed (10-100 cm/s).
+   * @param pad Mission pad id (1-8).
+   * @return The command.
+   */
+  public static EncodedCommand go(int x, int y, int z, int speed, int pad)
+  {
+    checkGo(x, y, z, speed);
+    checkRange("mission pad", pad, MIN_PAD, MAX_PAD);
+
+    return EncodedCommand.of(TelloCommandValues.GO + " " + x + " " + y + " " + z + " " + speed + " m" + pad);
+  }
+
+  /**
+   * Build a curve command relative to the current position. The drone flies
+   * the arc from its position through the first point to the second.
+   * @param x1 X offset of first point (-500 to 500 cm).
+   * @param y1 Y offset of first point (-500 to 500 cm).
+   * @param z1 Z offset of first point (-500 to 500 cm).
+   * @param x2 X offset of second point (-500 to 500 cm).
+   * @param y2 Y offset of second point (-500 to 500 cm).
+   * @param z2 Z offset of second point (-500 to 500 cm).
+   * @param speed Speed (10-60 cm/s).
+   * @return The command.
+   */
+  public static EncodedCommand curve(int x1, int y1, int z1, int x2, int y2, int z2, int speed)
+  {
+    checkCurve(x1, y1, z1, x2, y2, z2, speed);
+
+    return EncodedCommand.of(TelloCommandValues.CURVE + " " + x1 + " " + y1 + " " + z1 + " " +
+                             x2 + " " + y2 + " " + z2 + " " + speed);
+  }
+
+  /**
+   * Build a curve command relative to a mission pad.
+   * @param x1 X coordinate of first point (-500 to 500 cm).
+   * @param y1 Y coordinate of first point (-500 to 500 cm).
+   * @param z1 Z coordinate of first point (-500 to 500 cm).
+   * @param x2 X coordinate of second point (-500 to 500 cm).
+   * @param y2 Y coordinate of second point (-500 to 500 cm).
+   * @param z2 Z coordinate of second point (-500 to 500 cm).
+   * @param speed Speed (10-60 cm/s).
+   * @param pad Mission pad id (1-8).
+   * @return The command.
+   */
+  public static EncodedCommand curve(int x1, int y1, int z1, int x2, int y2, int z2, int speed, int pad)
+  {
+    checkCurve(x1, y1, z1, x2, y2, z2, speed);
+    checkRange("mission pad", pad, MIN_PAD, MAX_PAD);
+
+    return EncodedCommand.of(TelloCommandValues.CURVE + " " + x1 + " " + y1 + " " + z1 + " " +
+                             x2 + " " + y2 + " " + z2 + " " + speed + " m" + pad);
+  }
+
+  /**
+   * Build a jump command, flying to x y z of the first mission pad, then
+   * to 0 0 z of the second pad and rotating to yaw.
+   * @param x X coordinate (-500 to 500 cm).
+   * @param y Y coordinate (-500 to 500 cm).
+   * @param z Z coordinate (-500 to 500 cm).
+   * @param speed Speed (10-100 cm/s).
+   * @param yaw Heading in degrees.
+   * @param pad1 First mission pad id (1-8).
+   * @param pad2 Second mission pad id (1-8).
+   * @return The command.
+   */
+  public static EncodedCommand jump(int x, int y, int z, int speed, int yaw, int pad1, int pad2)
+  {
+    checkGo(x, y, z, speed);
+    checkRange("mission pad", pad1, MIN_PAD, MAX_PAD);
+    checkRange("mission pad", pad2, MIN_PAD, MAX_PAD);
+
+    return EncodedCommand.of(TelloCommandValues.JUMP + " " + x + " " + y + " " + z + " " + speed + " " + yaw +
+                             " m" + pad1 + " m" + pad2);
+  }
+
+  /**
+   * Check the arc of a curve command. The arc runs from the current
+   * position, the origin, through both points. Its radius is that of the
+   * circle through the three points, |a| |b| |a - b| / 2 |a x b|, compared
+   * squared in exact integer arithmetic.
+   * @param x1 X offset of first point (cm).
+   * @param y1 Y offset of first point (cm).
+   * @param z1 Z offset of first point (cm).
+   * @param x2 X offset of second point (cm).
+   * @param y2 Y offset of second point (cm).
+   * @param z2 Z offset of second point (cm).
+   * @return True if the points are not in line and the radius is 0.5 to 10 m.
+   */
+  public static boolean isValidArc(int x1, int y1, int z1, int x2, int y2, int z2)
+  {
+    long a2 = (long) x1 * x1 + (long) y1 * y1 + (long) z1 * z1;
+    long b2 = (long) x2 * x2 + (long) y2 * y2 + (long) z2 * z2;
+    long dx = x1 - x2, dy = y1 - y2, dz = z1 - z2;
+    long c2 = dx * dx + dy * dy + dz * dz;
+
+    long cx = (long) y1 * z2 - (long) z1 * y2, cy = (long) z1 * x2 - (long) x1 * z2, cz = (long) x1 * y2 - (long) y1 * x2;
+    long cross2 = cx * cx + cy * cy + cz * cz;
+
+    // Points in line, no arc.
+    if (cross2 == 0) return false;
+
+    // radius^2 = a2 b2 c2 / 4 cross2. With coordinates up to 500 the
+    // products stay below 2^63, beyond that use doubles.
+    if (a2 <= 750000 && b2 <= 750000)
+    {
+      long numerator = a2 * b2 * c2;
+
+      return numerator >= 4L * MIN_RADIUS * MIN_RADIUS * cross2 &&
+             numerator <= 4L * MAX_RADIUS * MAX_RADIUS * cross2;
+    }
+
+    double radius2 = (double) a2 * b2 * c2 / (4.0 * cross2);
+
+    return radius2 >= (double) MIN_RADIUS * MIN_RADIUS && radius2 <= (double) MAX_RADIUS * MAX_RADIUS;
+  }
+
+  /**
+   * Check composed command text against the SDK ranges. Commands without
+   * known ranges pass.
+   * @param command Command text such as "forward 50".
+   * @throws TelloCommandException if a parameter is out of range or not a number.
+   */
+  public static void validate(String command)
+  {
+    int space = command.indexOf(' ');
+
+    if (space < 0) return;
+
+    String name = command.substring(0, space);
+    String[] words = command.substring(space + 1).trim().split(" +");
+
+    try
+    {
+      switch (name)
+      {
+        case TelloCommandValues.UP:
+        case TelloCommandValues.DOWN:
+        case TelloCommandValues.LEFT:
+        case TelloCommandValues.RIGHT:
+        case TelloCommandValues.FORWARD:
+        case TelloCommandValues.BACK:
+          checkCount(command, words, 1, 1);
+          checkRange("distance", Integer.parseInt(words[0]), MIN_DISTANCE, MAX_DISTANCE);
+          break;
+
+        case TelloCommandValues.CW:
+        case TelloCommandValues.CCW:
+          checkCount(command, words, 1, 1);
+          checkRange("angle", Integer.parseInt(words[0]), MIN_ANGLE, MAX_ANGLE);
+          break;
+
+        case TelloCommandValues.SPEED:
+          checkCount(command, words, 1, 1);
+          checkRange("speed", Integer.parseInt(words[0]), MIN_SPEED, MAX_SPEED);
+          break;
+
+        case TelloCommandValues.GO:
+          checkCount(command, words, 4, 5);
+          checkGo(parse(words, 0), parse(words, 1), parse(words, 2), parse(words, 3));
+          if (words.length == 5) checkPad(words[4]);
+          break;
+
+        case TelloCommandValues.CURVE:
+          checkCount(command, words, 7, 8);
+          checkCurve(parse(words, 0), parse(words, 1), parse(words, 2),
+                     parse(words, 3), parse(words, 4), parse(words, 5), parse(words, 6));
+          if (words.length == 8) checkPad(words[7]);
+          break;
+
+        case TelloCommandValues.JUMP:
+          checkCount(command, words, 7, 7);
+          checkGo(parse(words, 0), parse(words, 1), parse(words, 2), parse(words, 3));
+          parse(words, 4);
+          checkPad(words[5]);
+          checkPad(words[6]);
+          break;
+
+        case TelloCommandValues.RC:
+          checkCount(command, words, 4, 4);
+          for (int i = 0; i < 4; i++) checkRange("rc value", parse(words, i), -MAX_RC, MAX_RC);
+          break;
+      }
+    }
+    catch (NumberFormatException e)
+    {
+      throw new TelloCommandException("invalid parameter: " + command);
+    }
+  }
+
+  private static boolean isMove(String direction)
+  {
+    switch (direction)
+    {
+      case TelloCommandValues.UP:
+      case TelloCommandValues.DOWN:
+      case TelloCommandValues.LEFT:
+      case TelloCommandValues.RIGHT:
+      case TelloCommandValues.FORWARD:
+      case TelloCommandValues.BACK:
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  private static void checkGo(int x, int y, int z, int speed)
+  {
+    checkPoint(x, y, z);
+    checkRange("speed", speed, MIN_SPEED, MAX_SPEED);
+  }
+
+  private static void checkCurve(int x1, int y1, int z1, int x2, int y2, int z2, int speed)
+  {
+    checkPoint(x1, y1, z1);
+    checkPoint(x2, y2, z2);
+    checkRange("speed", speed, MIN_SPEED, MAX_CURVE_SPEED);
+
+    if (!isValidArc(x1, y1, z1, x2, y2, z2))
+      throw new TelloCommandException("invalid parameter: arc radius must be 0.5 to 10 m");
+  }
+
+  private static void checkPoint(int x, int y, int z)
+  {
+    checkRange("x", x, -MAX_COORDINATE, MAX_COORDINATE);
+    checkRange("y", y, -MAX_COORDINATE, MAX_COORDINATE);
+    checkRange("z", z, -MAX_COORDINATE, MAX_COORDINATE);
+
+    if (Math.abs(x) <= DEAD_BOX && Math.abs(y) <= DEAD_BOX && Math.abs(z) <= DEAD_BOX)
+      throw new TelloCommandException("invalid parameter: x, y and z may not all be -20 to 20");
+  }
+
+  private static void checkPad(String pad)
+  {
+    if (pad.length() < 2 || pad.charAt(0) != 'm') throw new TelloCommandException("invalid mission pad: " + pad);
+
+    checkRange("mission pad", Integer.parseInt(pad.substring(1)), MIN_PAD, MAX_PAD);
+  }
+
+  private static void checkCount(String command, String[] words, int min, int max)
+  {
+    if (words.length < min || words.length > max) throw new TelloCommandException("wrong parameter count: " + command);
+  }
+
+  private static int parse(String[] words, int index)
+  {
+    return Integer.parseInt(words[index]);
+  }
+
+  private static void checkRange(String name, int value, int min, int max)
+  {
+    if (value < min || value > max)
+      throw new TelloCommandException("invalid parameter: " + name + " " + value + " not " + min + " to " + max);
+  }
+}
@@ -0,0 +1,105 @@
+package tellolib.communication;
+
+/**
+ * Outcome of one command of a batch run by executeCommands(). A batch stops
+ * at the first command that fails, the commands after it are skipped and
+ * never sent.
+ */
+public class CommandResult
+{
+	private final String		command;
+	private volatile String		response;
+	private volatile RuntimeException	error;
+	private volatile boolean	done;
+	private volatile long		sendTime, latency;
+
+	CommandResult(String command)
+	{
+		this.command = command;
+	}
+
+	/**
+	 * Returns the command text.
+	 * @return Command as sent to the drone.
+	 */
+	public String getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * Returns the response from the drone.
+	 * @return Response, null if the command was skipped or no response came.
+	 */
+	public String getResponse()
+	{
+		return response;
+	}
+
+	/**
+	 * Returns the exception the command failed with.
+	 * @return TelloCommandException or TelloConnectionException, null if the
+	 * command succeeded or was skipped.
+	 */
+	public RuntimeException getError()
+	{
+		return error;
+	}
+
+	/**
+	 * Check if the command succeeded.
+	 * @return True if the drone responded as expected.
+	 */
+	public boolean isSuccess()
+	{
+		return done && error == null;
+	}
+
+	/**
+	 * Check if the command was skipped because an earlier command failed.
+	 * @return True if not sent.
+	 */
+	public boolean isSkipped()
+	{
+		return !done;
+	}
+
+	/**
+	 * Returns the time the command was sent.
+	 * @return System.nanoTime() at send, 0 if skipped.
+	 */
+	public long getSendTime()
+	{
+		return sendTime;
+	}
+
+	/**
+	 * Returns the time from send to response or failure.
+	 * @return Latency in nanoseconds, 0 if skipped.
+	 */
+	public long getLatency()
+	{
+		return latency;
+	}
+
+	void sent(long sendTime)
+	{
+		this.sendTime = sendTime;
+	}
+
+	void completed(String response, RuntimeException error)
+	{
+		this.response = response;
+		this.error = error;
+		latency = System.nanoTime() - sendTime;
+		done = true;
+	}
+
+	@Override
+	public String toString()
+	{
+		if (!done) return command + ": skipped";
+
+		return String.format("%s: %s (%.1f ms)", command, error == null ? response : error.getMessage(), latency / 1e6);
+	}
+}
@@ -0,0 +1,221 @@
+package tellolib.communication;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import tellolib.command.TelloCommandValues;
+import tellolib.exception.TelloConnectionException;
+
+/**
+ * Matches responses from the drone to the commands waiting for them. The
+ * Tello protocol has no sequence numbers, responses simply come in command
+ * order, so a reply arriving after its command timed out would be taken as
+ * the answer to the next command. The tracker hands each response to the
+ * oldest waiting command whose expected shape it fits, "ok" for control
+ * commands, a number, "key:value;" list or text for read commands, and
+ * discards replies that fit none instead of handing them to the wrong
+ * caller. A command sent while another is in flight, such as a keepalive
+ * query during a move or a priority stop during a query, so gets its reply
+ * when that arrives first. Responses arriving with no command waiting are
+ * discarded as well.
+ * <p>
+ * A late reply of the same shape as the next expected one, such as an "ok"
+ * from a timed out move while a stop waits, can't be told apart and is
+ * taken as the answer.
+ */
+class CommandTracker
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	// How long a timed out command may still send a late reply.
+	private static final long	LATE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+	/**
+	 * Shape of the response a command expects.
+	 */
+	enum Shape { OK, NUMBER, KEYED, TEXT }
+
+	/**
+	 * A command waiting for its response, completed with the response.
+	 */
+	static class PendingCommand extends CompletableFuture<String>
+	{
+		final String	command;
+		final Shape		shape;
+		volatile long	sendTime;
+
+		PendingCommand(String command)
+		{
+			this.command = command;
+			shape = shapeOf(command);
+		}
+	}
+
+	private final ConcurrentLinkedQueue<PendingCommand>	pending = new ConcurrentLinkedQueue<>();
+
+	// Expiry times of timed out commands that may still reply.
+	private final ConcurrentLinkedQueue<Long>	timedOut = new ConcurrentLinkedQueue<>();
+
+	// Commands waiting to be sent again after a timeout, which have no
+	// pending command while they wait.
+	private final Set<CompletableFuture<String>>	retrying = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong	late = new AtomicLong(), mismatched = new AtomicLong();
+
+	/**
+	 * Add a command about to be sent.
+	 */
+	void add(PendingCommand command)
+	{
+		command.sendTime = System.nanoTime();
+
+		pending.add(command);
+	}
+
+	/**
+	 * Remove a command that could not be sent.
+	 */
+	void remove(PendingCommand command)
+	{
+		pending.remove(command);
+	}
+
+	/**
+	 * Returns true if a command is waiting for its response.
+	 */
+	boolean hasPending()
+	{
+		return !pending.isEmpty();
+	}
+
+	/**
+	 * Remove a command that timed out. Its reply may still arrive.
+	 */
+	void timedOut(PendingCommand command)
+	{
+		if (pending.remove(command)) timedOut.add(System.nanoTime() + LATE_NANOS);
+	}
+
+	/**
+	 * Add a command waiting to be sent again, so failAll() fails it. It is
+	 * removed when it completes.
+	 */
+	void retrying(CompletableFuture<String> command)
+	{
+		if (retrying.add(command)) command.whenComplete((r, e) -> retrying.remove(command));
+	}
+
+	/**
+	 * Hand a response to the oldest waiting command it fits.
+	 * Called on the transport thread.
+	 */
+	void responseReceived(String response)
+	{
+		PendingCommand head = pending.peek();
+
+		for (PendingCommand command : pending)
+		{
+			if (!accepts(command.shape, response)) continue;
+
+			// A timeout on the scheduler may be removing the command at the
+			// same time, the response is then the late reply of the command.
+			if (pending.remove(command))
+			{
+				if (!command.complete(response)) late.incrementAndGet();
+				return;
+			}
+
+			break;
+		}
+
+		if (isLate())
+		{
+			late.incrementAndGet();
+			logger.finer("late response discarded: " + response);
+		}
+		else
+		{
+			mismatched.incrementAndGet();
+			logger.fine("unexpected response discarded: " + response +
+						(head == null ? "" : " waiting for " + head.command));
+		}
+	}
+
+	/**
+	 * Fail all waiting commands, including those waiting to be sent again.
+	 */
+	void failAll(String reason)
+	{
+		PendingCommand command;
+
+		while ((command = pending.poll()) != null)
+			command.completeExceptionally(new TelloConnectionException(reason));
+
+		for (CompletableFuture<String> retry : retrying)
+			retry.completeExceptionally(new TelloConnectionException(reason));
+
+		timedOut.clear();
+	}
+
+	long getLate()
+	{
+		return late.get();
+	}
+
+	long getMismatched()
+	{
+		return mismatched.get();
+	}
+
+	// True if a timed out command may still be replying, in which case the
+	// response is counted as its reply.
+	private boolean isLate()
+	{
+		long now = System.nanoTime();
+		Long expiry;
+
+		while ((expiry = timedOut.poll()) != null)
+			if (expiry - now > 0) return true;
+
+		return false;
+	}
+
+	static Shape shapeOf(String command)
+	{
+		if (!command.endsWith("?")) return Shape.OK;
+
+		switch (command)
+		{
+			case TelloCommandValues.CURRENT_ATTITUDE:
+			case TelloCommandValues.CURRENT_ACCELERATION: return Shape.KEYED;
+			case TelloCommandValues.SN: return Shape.TEXT;
+			default: return Shape.NUMBER;
+		}
+	}
+
+	static boolean accepts(Shape shape, String response)
+	{
+		String lower = response.trim().toLowerCase();
+
+		boolean error = lower.startsWith("error") || lower.startsWith("unknown command") ||
+						lower.startsWith("unkown command") || lower.startsWith("out of range");
+
+		// Any command may fail.
+		if (error) return true;
+
+		boolean ok = lower.startsWith("ok") || lower.startsWith("forced stop");
+
+		switch (shape)
+		{
+			case OK: return ok;
+			case NUMBER: return !ok && !lower.isEmpty() && (Character.isDigit(lower.charAt(0)) || lower.charAt(0) == '-');
+			case KEYED: return !ok && lower.indexOf(':') > 0;
+			default: return !ok;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package tellolib.communication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a segment file written by {@link FlightRecorder}, one record at a
+ * time:
+ * <pre>
+ * try (FlightLogReader reader = new FlightLogReader(file))
+ * {
+ *     while (reader.next())
+ *         if (reader.getType() == FlightRecorder.COMMAND) ...
+ * }
+ * </pre>
+ */
+public class FlightLogReader implements Closeable
+{
+	private final FileChannel		channel;
+	private final MappedByteBuffer	log;
+	private final long				startMillis, startNanos;
+
+	private final ByteBuffer		data;
+	private byte					type;
+	private long					time;
+
+	/**
+	 * Open a segment file.
+	 * @param file The file.
+	 * @throws IOException If the file can't be read or is not a flight log.
+	 */
+	public FlightLogReader(Path file) throws IOException
+	{
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		try
+		{
+			log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (log.remaining() < FlightRecorder.HEADER_SIZE || log.getInt() != FlightRecorder.MAGIC)
+				throw new IOException("Not a flight log: " + file);
+
+			int version = log.getInt();
+
+			if (version != FlightRecorder.VERSION)
+				throw new IOException("Unsupported flight log version " + version + ": " + file);
+
+			startMillis = log.getLong();
+			startNanos = log.getLong();
+
+			data = log.duplicate();
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Move to the next record.
+	 * @return False at the end of the file.
+	 * @throws IOException If the file is truncated.
+	 */
+	public boolean next() throws IOException
+	{
+		if (!log.hasRemaining() || (type = log.get()) == FlightRecorder.END) return false;
+
+		if (log.remaining() < FlightRecorder.RECORD_HEADER_SIZE - 1) throw new IOException("Flight log truncated");
+
+		int length = log.getShort();
+
+		time = log.getLong();
+
+		if (length < 0 || log.remaining() < length) throw new IOException("Flight log truncated");
+
+		data.limit(log.position() + length).position(log.position());
+
+		log.position(log.position() + length);
+
+		return true;
+	}
+
+	/**
+	 * Type of the current record.
+	 * @return FlightRecorder.STATUS, COMMAND or RESPONSE.
+	 */
+	public byte getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Time of the current record.
+	 * @return System.nanoTime() of the recording program when the packet was sent or received.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Time of the current record as wall clock time.
+	 * @return Epoch milliseconds.
+	 */
+	public long getTimeMillis()
+	{
+		return startMillis + (time - startNanos) / 1_000_000;
+	}
+
+	/**
+	 * Packet bytes of the current record. The buffer is reused by the next
+	 * call to next().
+	 * @return Read only buffer holding the packet bytes.
+	 */
+	public ByteBuffer getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Time the recording started.
+	 * @return Epoch milliseconds.
+	 */
+	public long getStartMillis()
+	{
+		return startMillis;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
@@ -0,0 +1,349 @@
+package tellolib.communication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Flight data recorder. Appends every status packet, command and response
+ * exchanged with a drone to memory mapped log files for examination after
+ * the flight, see {@link FlightLogReader}.
+ * <p>
+ * Recording copies the packet bytes into the mapped file, nothing is
+ * converted to text and nothing is allocated, so it can stay on for every
+ * flight. The operating system writes the file in the background. Once a
+ * segment file is half full the next one is created and mapped on a
+ * background thread, and when the segment is full the recorder switches to
+ * it and flushes the full one on that thread, so the threads recording
+ * never wait on the file system.
+ * <p>
+ * Files are named flight-date-time-segment.tlog. If another recorder
+ * started in the same second in the same directory, a number is added
+ * after the time.
+ * <p>
+ * File format, all values big endian: a header of magic, version, start
+ * time in epoch milliseconds and System.nanoTime() at start, followed by
+ * records of type byte, data length short, System.nanoTime() at send or
+ * receipt and the packet bytes. A type of zero ends the file.
+ */
+public class FlightRecorder implements Closeable
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	public static final int		MAGIC = 0x544c4652;		// "TLFR"
+	public static final int		VERSION = 1;
+	public static final int		HEADER_SIZE = 24;
+	public static final int		RECORD_HEADER_SIZE = 11;
+
+	/**
+	 * Record types.
+	 */
+	public static final byte	END = 0, STATUS = 1, COMMAND = 2, RESPONSE = 3;
+
+	/**
+	 * Default segment file size, about 20 hours of status packets.
+	 */
+	public static final int		DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private final Path			directory;
+	private final String		baseName;
+	private final int			segmentSize;
+
+	private final ExecutorService	writer;
+
+	private MappedByteBuffer	segment;
+	private Future<Segment>		next;
+	private int					segmentNumber;
+	private long				recorded, dropped;
+	private boolean				closed;
+
+	/**
+	 * Create a recorder writing segment files of the default size.
+	 * @param directory Directory to write files in.
+	 * @throws IOException If the first segment file can't be created.
+	 */
+	public FlightRecorder(Path directory) throws IOException
+	{
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Create a recorder.
+	 * @param directory Directory to write files in.
+	 * @param segmentSize Size of each segment file in bytes.
+	 * @throws IOException If the first segment file can't be created.
+	 */
+	public FlightRecorder(Path directory, int segmentSize) throws IOException
+	{
+		if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + 1024)
+			throw new IllegalArgumentException("segment size too small");
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		writer = Executors.newSingleThreadExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "FlightRecorder");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		Files.createDirectories(directory);
+
+		// Find a name no other recorder uses, recorders of a swarm may start
+		// in the same second.
+		String stamp = "flight-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()), name = stamp;
+		Segment first = null;
+
+		for (int n = 2; first == null; n++)
+		{
+			try
+			{
+				first = mapSegment(name, 0);
+			}
+			catch (FileAlreadyExistsException e)
+			{
+				if (n > 100)
+				{
+					writer.shutdown();
+					throw e;
+				}
+
+				name = stamp + "-" + n;
+			}
+			catch (IOException e)
+			{
+				writer.shutdown();
+				throw e;
+			}
+		}
+
+		baseName = name;
+		segmentNumber = 1;
+
+		beginSegment(first);
+	}
+
+	/**
+	 * Record a packet. The data buffer's position is left unchanged.
+	 * @param type Record type.
+	 * @param data Packet bytes from position to limit.
+	 * @param time System.nanoTime() when the packet was sent or received.
+	 */
+	public synchronized void record(byte type, ByteBuffer data, long time)
+	{
+		if (closed) return;
+
+		int length = data.remaining();
+
+		if (!reserve(length)) return;
+
+		int position = data.position();
+
+		segment.put(type).putShort((short) length).putLong(time).put(data);
+
+		data.position(position);
+
+		recorded++;
+	}
+
+	/**
+	 * Record a packet.
+	 * @param type Record type.
+	 * @param data Packet bytes.
+	 * @param time System.nanoTime() when the packet was sent or received.
+	 */
+	public synchronized void record(byte type, byte[] data, long time)
+	{
+		if (closed || !reserve(data.length)) return;
+
+		segment.put(type).putShort((short) data.length).putLong(time).put(data);
+
+		recorded++;
+	}
+
+	/**
+	 * Number of packets recorded.
+	 * @return Record count.
+	 */
+	public synchronized long getRecorded()
+	{
+		return recorded;
+	}
+
+	/**
+	 * Number of packets not recorded because they were too large, or a
+	 * new segment file could not be created or was not ready yet.
+	 * @return Dropped count.
+	 */
+	public synchronized long getDropped()
+	{
+		return dropped;
+	}
+
+	/**
+	 * Write out and close the current segment. Later packets are ignored.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (closed) return;
+
+		closed = true;
+
+		endSegment();
+
+		// Leave a segment mapped in advance but not used as a valid empty log
+		// in case it can't be deleted while still mapped.
+		if (next != null)
+		{
+			Future<Segment> unused = next;
+
+			writer.execute(() -> discard(unused));
+		}
+
+		writer.shutdown();
+	}
+
+	// Make room for a record, moving to a new segment if this one is full.
+	private boolean reserve(int length)
+	{
+		// Keep one byte for the end marker.
+		int size = RECORD_HEADER_SIZE + length + 1;
+
+		if (length > Short.MAX_VALUE || size > segmentSize - HEADER_SIZE)
+		{
+			dropped++;
+			return false;
+		}
+
+		if (segment.remaining() >= size)
+		{
+			if (next == null && segment.position() > segmentSize / 2) prepareSegment();
+
+			return true;
+		}
+
+		if (next == null) prepareSegment();
+
+		// Never wait for the next segment here, drop the packet if it is
+		// not mapped yet.
+		if (!next.isDone())
+		{
+			dropped++;
+			return false;
+		}
+
+		Segment following;
+
+		try
+		{
+			following = next.get();
+		}
+		catch (ExecutionException e)
+		{
+			logger.warning("flight recorder stopped: " + e.getCause().toString());
+			next = null;
+			close();
+			dropped++;
+			return false;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			dropped++;
+			return false;
+		}
+
+		next = null;
+
+		endSegment();
+		beginSegment(following);
+
+		return true;
+	}
+
+	// Create and map the next segment file on the writer thread.
+	private void prepareSegment()
+	{
+		int number = segmentNumber++;
+
+		next = writer.submit(() -> mapSegment(baseName, number));
+	}
+
+	private Segment mapSegment(String name, int number) throws IOException
+	{
+		Path file = directory.resolve(String.format("%s-%03d.tlog", name, number));
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+		}
+	}
+
+	private void beginSegment(Segment begun)
+	{
+		segment = begun.buffer;
+
+		writeHeader(segment);
+
+		logger.fine("flight recorder writing " + begun.file);
+	}
+
+	// End the current segment and flush it on the writer thread.
+	private void endSegment()
+	{
+		MappedByteBuffer ended = segment;
+
+		if (ended.hasRemaining()) ended.put(END);
+
+		writer.execute(ended::force);
+	}
+
+	private void discard(Future<Segment> unused)
+	{
+		try
+		{
+			Segment segment = unused.get();
+
+			writeHeader(segment.buffer);
+			segment.buffer.put(END);
+			segment.buffer.force();
+
+			Files.deleteIfExists(segment.file);
+		}
+		catch (ExecutionException | IOException e) {}
+		catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+	}
+
+	private static void writeHeader(MappedByteBuffer buffer)
+	{
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putLong(System.nanoTime());
+	}
+
+	private static class Segment
+	{
+		final Path				file;
+		final MappedByteBuffer	buffer;
+
+		Segment(Path file, MappedByteBuffer buffer)
+		{
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
+}
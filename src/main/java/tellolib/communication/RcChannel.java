@@ -0,0 +1,238 @@
+package tellolib.communication;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import tellolib.command.CommandEncoder;
+import tellolib.command.TelloCommandValues;
+import tellolib.exception.TelloConnectionException;
+
+/**
+ * Sends rc commands to the drone at a fixed rate from the transport
+ * scheduler. Callers only set the stick positions, which costs a volatile
+ * write; each tick sends the latest positions if they changed since the last
+ * send. Positions set between ticks are coalesced to the latest one, so
+ * control latency is bounded by the tick and never waits for a blocking
+ * command in progress.
+ * <p>
+ * Unchanged positions, zero included, are sent again every refresh interval
+ * while the caller keeps setting them, so a lost packet does not leave the
+ * drone moving on stale input and a hovering drone does not reach its idle
+ * timeout and land. Zero is not repeated while a command waits for its
+ * response, so the refresh does not cut into a move or flip. If the caller
+ * stops setting positions for the set-point timeout, for instance because
+ * its control loop hung with a stick deflected, zero is sent once in place
+ * of the last positions until they are set again.
+ */
+public class RcChannel
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	/**
+	 * Default send rate, 20 per second.
+	 */
+	public static final int		DEFAULT_RATE = 20;
+
+	private static final long	REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private static final long	SET_POINT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final int	ZERO = pack(0, 0, 0, 0);
+
+	private static final int	NOT_SENT = -1;
+
+	private final TelloCommunication	communication;
+
+	// The four stick positions packed into one int, 8 bits each offset by 128.
+	private volatile int		setPoint = ZERO;
+	private volatile long		setTime;
+
+	// Only used on the scheduler thread.
+	private int					lastSent = NOT_SENT;
+	private long				lastSendTime;
+	private final ByteBuffer	buffer = ByteBuffer.allocateDirect(32);
+
+	private volatile ScheduledFuture<?>	ticker;
+	private int					rate = DEFAULT_RATE;
+
+	private final AtomicLong	sent = new AtomicLong(), suppressed = new AtomicLong(), timeouts = new AtomicLong();
+
+	RcChannel(TelloCommunication communication)
+	{
+		this.communication = communication;
+	}
+
+	/**
+	 * Set the stick positions to be sent on the next tick. Starts sending
+	 * if not started. Values outside -100 to 100 are clamped.
+	 * @param lr Left/Right (-100 to 100).
+	 * @param fb Forward/Backward (-100 to 100).
+	 * @param ud Up/Down (-100 to 100).
+	 * @param yaw Yaw (-100 to 100).
+	 */
+	public void set(int lr, int fb, int ud, int yaw)
+	{
+		setPoint = pack(lr, fb, ud, yaw);
+		setTime = System.nanoTime();
+
+		if (ticker == null) start();
+	}
+
+	/**
+	 * Set the stick positions to zero without sending them, for use when
+	 * a command such as stop or land has already stopped the drone. Keeps
+	 * an old position from being sent again after the command, and zero is
+	 * not refreshed until positions are set again.
+	 */
+	public void reset()
+	{
+		setPoint = ZERO;
+		setTime = System.nanoTime() - SET_POINT_TIMEOUT_NANOS - 1;
+
+		ScheduledExecutorService scheduler = communication.getScheduler();
+
+		// Mark zero as sent on the scheduler thread that owns lastSent.
+		if (ticker != null && scheduler != null) scheduler.execute(() -> lastSent = ZERO);
+	}
+
+	/**
+	 * Set the send rate. Restarts sending if started.
+	 * @param rate Sends per second (1-100).
+	 */
+	public synchronized void setRate(int rate)
+	{
+		if (rate < 1 || rate > 100) throw new IllegalArgumentException("rate must be 1-100");
+
+		this.rate = rate;
+
+		if (ticker != null)
+		{
+			stop();
+			start();
+		}
+	}
+
+	/**
+	 * Start sending. Called by set() if needed.
+	 */
+	public synchronized void start()
+	{
+		if (ticker != null) return;
+
+		ScheduledExecutorService scheduler = communication.getScheduler();
+
+		if (scheduler == null) throw new TelloConnectionException("No connection");
+
+		long period = TimeUnit.SECONDS.toNanos(1) / rate;
+
+		ticker = scheduler.scheduleAtFixedRate(this::tick, 0, period, TimeUnit.NANOSECONDS);
+
+		logger.fine("rc channel started at " + rate + "/s");
+	}
+
+	/**
+	 * Stop sending. Called when communication is disconnected.
+	 */
+	public synchronized void stop()
+	{
+		if (ticker == null) return;
+
+		ticker.cancel(false);
+		ticker = null;
+		lastSent = NOT_SENT;
+
+		logger.fine(String.format("rc channel stopped, %d sent, %d suppressed", getSent(), getSuppressed()));
+	}
+
+	/**
+	 * Number of rc commands sent.
+	 * @return Sent count.
+	 */
+	public long getSent()
+	{
+		return sent.get();
+	}
+
+	/**
+	 * Number of ticks where the positions were unchanged and nothing was sent.
+	 * @return Suppressed count.
+	 */
+	public long getSuppressed()
+	{
+		return suppressed.get();
+	}
+
+	/**
+	 * Number of times the positions were set to zero because the caller
+	 * stopped setting them.
+	 * @return Timeout count.
+	 */
+	public long getTimeouts()
+	{
+		return timeouts.get();
+	}
+
+	// Runs on the scheduler.
+	private void tick()
+	{
+		int current = setPoint;
+		long now = System.nanoTime();
+
+		// Positions not set for the timeout are stale, stop the drone.
+		boolean stale = now - setTime > SET_POINT_TIMEOUT_NANOS;
+
+		if (stale && current != ZERO)
+		{
+			if (lastSent != ZERO)
+			{
+				timeouts.incrementAndGet();
+				logger.warning("rc positions not set for " + TimeUnit.NANOSECONDS.toMillis(SET_POINT_TIMEOUT_NANOS) + " ms, sending zero");
+			}
+
+			current = ZERO;
+		}
+
+		if (current == lastSent && (now - lastSendTime < REFRESH_NANOS ||
+			(current == ZERO && (stale || communication.isCommandPending()))))
+		{
+			suppressed.incrementAndGet();
+			return;
+		}
+
+		buffer.clear();
+
+		CommandEncoder.put(buffer, TelloCommandValues.RC);
+
+		for (int shift = 24; shift >= 0; shift -= 8)
+		{
+			buffer.put((byte) ' ');
+			CommandEncoder.putInt(buffer, ((current >>> shift) & 0xff) - 128);
+		}
+
+		buffer.flip();
+
+		try
+		{
+			communication.sendRaw(buffer);
+
+			lastSent = current;
+			lastSendTime = now;
+			sent.incrementAndGet();
+		}
+		catch (Exception e) { logger.warning("rc send failed: " + e.toString()); }
+	}
+
+	private static int pack(int lr, int fb, int ud, int yaw)
+	{
+		return clamp(lr) << 24 | clamp(fb) << 16 | clamp(ud) << 8 | clamp(yaw);
+	}
+
+	private static int clamp(int value)
+	{
+		return Math.max(-100, Math.min(100, value)) + 128;
+	}
+}
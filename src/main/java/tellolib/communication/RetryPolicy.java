@@ -0,0 +1,147 @@
+package tellolib.communication;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tellolib.command.TelloCommandValues;
+import tellolib.metrics.LatencyHistogram;
+
+/**
+ * Decides which commands are sent again when their response does not
+ * arrive in time. A few percent of datagrams are lost on a crowded WiFi
+ * channel, which would otherwise fail the command.
+ * <p>
+ * Only idempotent commands are retried, those where receiving the command
+ * twice has the same effect as once: read commands, settings such as speed,
+ * streamon or mon, and stop and emergency. Movements, flips, takeoff and
+ * land are not, the drone may have received the first one and only the
+ * response was lost. Commands answered with an error are never retried.
+ * Retries wait a random backoff that doubles with each attempt.
+ */
+public class RetryPolicy
+{
+	/**
+	 * Default number of retries after the first attempt.
+	 */
+	public static final int		DEFAULT_MAX_RETRIES = 2;
+
+	private static final long	BASE_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	private volatile int		maxRetries = DEFAULT_MAX_RETRIES;
+
+	private final AtomicLong	retries = new AtomicLong(), giveUps = new AtomicLong();
+	private final LatencyHistogram	recoveredLatency = new LatencyHistogram("recovered command");
+
+	/**
+	 * Check if a command may be sent again when its response is lost.
+	 * @param command The command text.
+	 * @return True if idempotent.
+	 */
+	public static boolean isIdempotent(String command)
+	{
+		if (command.endsWith("?")) return true;
+
+		int end = command.indexOf(' ');
+
+		switch (end < 0 ? command : command.substring(0, end))
+		{
+			case TelloCommandValues.COMMAND_MODE:
+			case TelloCommandValues.SPEED:
+			case TelloCommandValues.ENABLE_VIDEO_STREAM:
+			case TelloCommandValues.DISABLE_VIDEO_STREAM:
+			case TelloCommandValues.MON:
+			case TelloCommandValues.MOFF:
+			case TelloCommandValues.MDIRECTION:
+			case TelloCommandValues.STOP:
+			case TelloCommandValues.EMERGENCY:
+				return true;
+
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Set the number of retries.
+	 * @param maxRetries Retries after the first attempt, 0 to turn off retry.
+	 */
+	public void setMaxRetries(int maxRetries)
+	{
+		if (maxRetries < 0) throw new IllegalArgumentException("maxRetries must not be negative");
+
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Returns the number of retries.
+	 * @return Retries after the first attempt.
+	 */
+	public int getMaxRetries()
+	{
+		return maxRetries;
+	}
+
+	/**
+	 * Number of commands sent again.
+	 * @return Retry count.
+	 */
+	public long getRetries()
+	{
+		return retries.get();
+	}
+
+	/**
+	 * Number of commands that failed after all retries.
+	 * @return Give up count.
+	 */
+	public long getGiveUps()
+	{
+		return giveUps.get();
+	}
+
+	/**
+	 * Time from first send to response of commands that succeeded on a retry.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getRecoveredLatency()
+	{
+		return recoveredLatency;
+	}
+
+	/**
+	 * Check if a command should be sent again.
+	 * @param command The command text.
+	 * @param attempt Number of retries done.
+	 * @return True to retry.
+	 */
+	boolean shouldRetry(String command, int attempt)
+	{
+		return attempt < maxRetries && isIdempotent(command);
+	}
+
+	/**
+	 * Delay before a retry, random up to 20 ms doubled for each retry done.
+	 * @param attempt Number of retries done.
+	 * @return Delay in nanoseconds.
+	 */
+	long backoff(int attempt)
+	{
+		return ThreadLocalRandom.current().nextLong(BASE_BACKOFF_NANOS << Math.min(attempt, 8)) + 1;
+	}
+
+	void retried()
+	{
+		retries.incrementAndGet();
+	}
+
+	void gaveUp()
+	{
+		giveUps.incrementAndGet();
+	}
+
+	void recovered(long firstSendTime)
+	{
+		recoveredLatency.recordSince(firstSendTime);
+	}
+}
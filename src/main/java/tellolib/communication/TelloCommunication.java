@@ -1,19 +1,37 @@
 package tellolib.communication;
 
+import tellolib.command.CommandEncoder;
+import tellolib.command.EncodedCommand;
 import tellolib.command.TelloCommandInterface;
+import tellolib.command.TelloCommandValues;
+import tellolib.command.TelloCommands;
+import tellolib.communication.CommandTracker.PendingCommand;
 import tellolib.drone.TelloDrone;
 import tellolib.exception.TelloCommandException;
 import tellolib.exception.TelloConnectionException;
+import tellolib.metrics.LatencyHistogram;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -24,19 +42,86 @@ public class TelloCommunication implements TelloCommunicationInterface
 	private final Logger logger = Logger.getLogger("Tello");
 
   /**
-   * Datagram sockets for UDP communication with the Tello drone.
+   * Non-blocking UDP transport for communication with the Tello drone.
+   * May be shared with other drones, only closed here if we created it.
    */
-  private DatagramSocket ds, dsStatus;
+  private TelloTransport transport;
+  private boolean ownsTransport = true;
+  private volatile boolean connected;
 
   /**
-   * Drone IP address.
+   * Drone IP address and command port.
    */
   private InetAddress ipAddress;
+  private InetSocketAddress droneAddress;
 
   /**
    * Drone UDP ports and timeout.
    */
   private Integer udpPort, udpStatusPort, socketTimeout = 10000;
+
+  /**
+   * Callers waiting for a response, in the order their commands were sent.
+   * The Tello answers commands in order so each response completes the
+   * oldest waiting caller, if it is the kind of response that caller expects.
+   */
+  private final CommandTracker tracker = new CommandTracker();
+
+  /**
+   * Decides how long each command waits for its response.
+   */
+  private final TimeoutPolicy timeoutPolicy = new TimeoutPolicy();
+
+  /**
+   * Decides which commands are sent again when their response is lost.
+   */
+  private final RetryPolicy retryPolicy = new RetryPolicy();
+
+  /**
+   * Status packets received but not yet taken by receiveStatusData().
+   */
+  private final BlockingQueue<String> statusPackets = new ArrayBlockingQueue<>(16);
+
+  /**
+   * When set, receives status packets directly instead of receiveStatusData().
+   */
+  private volatile TelloStatusListener statusListener;
+
+  /**
+   * When set, records all traffic with the drone.
+   */
+  private volatile FlightRecorder recorder;
+
+  /**
+   * Sends rc commands at a fixed rate.
+   */
+  private final RcChannel rcChannel = new RcChannel(this);
+
+  /**
+   * Keeps queuing of a waiting caller and sending of its command in the same order.
+   */
+  private final Object sendLock = new Object();
+
+  /**
+   * Time the drone last answered a command, System.nanoTime().
+   */
+  private volatile long lastActivityTime = System.nanoTime();
+
+  /**
+   * Time the last control command was answered, System.nanoTime().
+   */
+  private volatile long lastControlResponseTime = System.nanoTime();
+
+  /**
+   * Buffer commands are encoded into before sending, one per sending thread.
+   */
+  private final ThreadLocal<ByteBuffer> sendBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1024));
+
+  /**
+   * Time from command call to datagram sent, normal and priority commands.
+   */
+  private final LatencyHistogram sendLatency = new LatencyHistogram("command send"),
+                                 prioritySendLatency = new LatencyHistogram("priority send");
 	
   // Private constructor, holder class and getInstance() implement this
   // class as a singleton.
@@ -48,11 +133,28 @@ public class TelloCommunication implements TelloCommunicationInterface
       ipAddress = InetAddress.getByName(TelloDrone.IP_ADDRESS);
       udpPort = TelloDrone.UDP_PORT;
       udpStatusPort = TelloDrone.UDP_STATUS_PORT;
+      droneAddress = new InetSocketAddress(ipAddress, udpPort);
     } catch (Exception e) {
       throw new TelloConnectionException(e);
     }
   }
   
+  /**
+   * Create a TelloCommunication for one drone of a swarm. Commands and
+   * status for the drone are carried on the supplied transport, which
+   * is shared with other drones and is not opened or closed here.
+   * @param transport Open transport shared by the swarm.
+   * @param droneAddress Drone ip address and command port.
+   */
+  public TelloCommunication(TelloTransport transport, InetSocketAddress droneAddress)
+  {
+    this.transport = transport;
+    this.droneAddress = droneAddress;
+    ownsTransport = false;
+    ipAddress = droneAddress.getAddress();
+    udpPort = droneAddress.getPort();
+  }
+  
   private static class SingletonHolder 
   {
     public static final TelloCommunication INSTANCE = new TelloCommunication();
@@ -74,48 +176,92 @@ public class TelloCommunication implements TelloCommunicationInterface
     {
       logger.info("Connecting to drone...");
       
-      ds = new DatagramSocket(udpPort);	// new dg socket to send/receive commands.
+      // New transport to send/receive commands and receive status feed.
+      if (ownsTransport)
+      {
+        transport = new TelloTransport(udpPort, udpStatusPort);
       
-      ds.setSoTimeout(socketTimeout);	// timeout on socket operations.
+        transport.open();
+      }
+      else if (!transport.isOpen()) throw new TelloConnectionException("Transport not open");
       
-      ds.connect(ipAddress, udpPort);
+      transport.register(droneAddress, new ResponseListener());
       
       if (!ipAddress.isReachable(100)) throw new TelloConnectionException("Tello not responding");
       
-      dsStatus = new DatagramSocket(udpStatusPort);	// new dg socket to receive status feed.
-      
-      dsStatus.setSoTimeout(socketTimeout);	// timeout on socket operations.
+      connected = true;
       
       logger.info("Connected!");
     } catch (Exception e) {
-      if (dsStatus != null) dsStatus.close();
-      if (ds != null) ds.close();
+      if (ownsTransport)
+      {
+        if (transport != null) transport.close();
+        transport = null;
+      }
+      else transport.unregister(droneAddress);
       //e.printStackTrace();
       throw new TelloConnectionException("Connect failed" , e);
     }
   }
 
   @Override
-  public synchronized void executeCommand(final TelloCommandInterface telloCommand) throws TelloConnectionException, 
+  public void executeCommand(final TelloCommandInterface telloCommand) throws TelloConnectionException, 
   											TelloCommandException
   {
-	String response;
+    await(executeCommandAsync(telloCommand));
+  }
 
-	if (telloCommand == null) throw new TelloCommandException("Command was null");
+  @Override
+  public CompletableFuture<Void> executeCommandAsync(final TelloCommandInterface telloCommand)
+  {
+	if (telloCommand == null) return failed(new TelloCommandException("Command was null"));
      
-    if (!ds.isConnected()) throw new TelloConnectionException("No connection");
+    if (!isConnected()) return failed(new TelloConnectionException("No connection"));
 
     final String command = telloCommand.composeCommand();
+
+    try 
+    {
+      TelloCommands.validate(command);
+    } catch (TelloCommandException e) {
+      return failed(e);
+    }
     
     logger.fine("executing command: " + command);
 
+    return sendCommand(command, encoded(telloCommand), false).thenAccept(this::checkResponse);
+  }
+
+  /**
+   * Executes a safety command such as emergency, stop or land at once.
+   * The command is sent without waiting for other callers sending
+   * commands, so it is not delayed by traffic from other threads.
+   * @param telloCommand The command to be executed.
+   * @return Future completed when the drone responds "ok".
+   */
+  public CompletableFuture<Void> executePriorityCommandAsync(final TelloCommandInterface telloCommand)
+  {
+	if (telloCommand == null) return failed(new TelloCommandException("Command was null"));
+     
+    if (!isConnected()) return failed(new TelloConnectionException("No connection"));
+
+    final String command = telloCommand.composeCommand();
+
     try 
     {
-      sendData(command);
-      response = receiveData();
-    } catch (Exception e) {
-      throw new TelloConnectionException(e);
-    } 
+      TelloCommands.validate(command);
+    } catch (TelloCommandException e) {
+      return failed(e);
+    }
+    
+    logger.fine("executing priority command: " + command);
+
+    return sendCommand(command, encoded(telloCommand), true).thenAccept(this::checkResponse);
+  }
+
+  private void checkResponse(String response)
+  {
+    lastControlResponseTime = System.nanoTime();
 
     logger.finer("response: " + response);
 
@@ -126,20 +272,24 @@ public class TelloCommunication implements TelloCommunicationInterface
   }
 
   @Override
-  public synchronized void executeCommandNoWait(final TelloCommandInterface telloCommand) throws TelloConnectionException, 
+  public void executeCommandNoWait(final TelloCommandInterface telloCommand) throws TelloConnectionException, 
   												TelloCommandException  
   {
 	if (telloCommand == null) throw new TelloCommandException("Command was null");
      
-    if (!ds.isConnected()) throw new TelloConnectionException("No connection");
+    if (!isConnected()) throw new TelloConnectionException("No connection");
 
     final String command = telloCommand.composeCommand();
+
+    TelloCommands.validate(command);
     
     logger.finer("executing command: " + command);
 
     try 
     {
-      sendData(command);
+      EncodedCommand encoded = encoded(telloCommand);
+
+      if (encoded != null) sendData(encoded); else sendData(command);
     } catch (Exception e) {
       throw new TelloConnectionException(e);
     } 
@@ -148,32 +298,60 @@ public class TelloCommunication implements TelloCommunicationInterface
   @Override
   public Map<String, String> getTelloOnBoardData(List<String> valuesToBeObtained) 
   {
-    Map<String, String> dataMap = new HashMap<>();
+    Map<String, String> dataMap = new LinkedHashMap<>();
+
+    if (valuesToBeObtained == null || valuesToBeObtained.isEmpty()) return dataMap;
+
+    if (!isConnected()) throw new TelloConnectionException("No connection");
+
+    // Send all queries at once, the drone answers them in order, so the
+    // batch takes about one round trip instead of one per value.
+    List<CompletableFuture<String>> responses = new ArrayList<>(valuesToBeObtained.size());
+
+    for (String value : valuesToBeObtained)
+    {
+      String command = value.endsWith("?") ? value : value + "?";
+
+      responses.add(sendCommand(command, false).thenApply(this::checkReadResponse));
+    }
+
+    for (int i = 0; i < responses.size(); i++)
+    {
+      try 
+      {
+        dataMap.put(valuesToBeObtained.get(i), await(responses.get(i)).trim());
+      } catch (TelloCommandException | TelloConnectionException e) {
+        logger.warning("on board data " + valuesToBeObtained.get(i) + " failed: " + e.getMessage());
+      }
+    }
 
     return dataMap;
   }
 
-  public synchronized String executeReadCommand(TelloCommandInterface telloCommand) throws TelloConnectionException, 
+  @Override
+  public String executeReadCommand(TelloCommandInterface telloCommand) throws TelloConnectionException, 
 	TelloCommandException 
   {
-	String response;
-	  
-	if (telloCommand == null) throw new TelloCommandException("Command was null");
+    return await(executeReadCommandAsync(telloCommand));
+  }
+
+  @Override
+  public CompletableFuture<String> executeReadCommandAsync(final TelloCommandInterface telloCommand)
+  {
+	if (telloCommand == null) return failed(new TelloCommandException("Command was null"));
     
-    if (!ds.isConnected()) throw new TelloConnectionException("No connection");
+    if (!isConnected()) return failed(new TelloConnectionException("No connection"));
 
     final String command = telloCommand.composeCommand();
     
-    if (command != "battery?") logger.fine("executing command: " + command);
+    if (command != TelloCommandValues.CURRENT_BATTERY && logger.isLoggable(Level.FINE)) 
+      logger.fine("executing command: " + command);
 
-    try 
-    {
-      sendData(command);
-      response = receiveData();
-    } catch (Exception e) {
-        throw new TelloConnectionException(e);
-    }
+    return sendCommand(command, encoded(telloCommand), false).thenApply(this::checkReadResponse);
+  }
 
+  private String checkReadResponse(String response)
+  {
     logger.finer("response: " + response);
 
     if (response.toLowerCase().startsWith("unknown command")) throw new TelloCommandException("unknown command");
@@ -181,60 +359,571 @@ public class TelloCommunication implements TelloCommunicationInterface
     if (response.toLowerCase().startsWith("unkown command")) throw new TelloCommandException("unknown command");
     if (response.toLowerCase().startsWith("out of range")) throw new TelloCommandException("invalid parameter");
     if (response.toLowerCase().startsWith("error")) throw new TelloCommandException("command failed: " + response);
-    
+  
     return response;
   }
 
   @Override
-  public void executeCommands(List<TelloCommandInterface> telloCommandList) 
+  public List<CommandResult> executeCommands(List<TelloCommandInterface> telloCommandList) 
+  {
+    return await(executeCommandsAsync(telloCommandList));
+  }
+
+  @Override
+  public CompletableFuture<List<CommandResult>> executeCommandsAsync(List<TelloCommandInterface> telloCommandList)
   {
+    if (telloCommandList == null) return failed(new TelloCommandException("Command was null"));
+
+    // Compose, check and encode the whole batch before sending anything, so
+    // a bad command fails the batch instead of stopping the drone half way.
+    int count = telloCommandList.size();
+    String[] commands = new String[count];
+    EncodedCommand[] data = new EncodedCommand[count];
+    List<CommandResult> results = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++)
+    {
+      TelloCommandInterface telloCommand = telloCommandList.get(i);
+
+      if (telloCommand == null) return failed(new TelloCommandException("Command was null"));
+
+      commands[i] = telloCommand.composeCommand();
+
+      if (commands[i] == null || commands[i].isEmpty()) 
+        return failed(new TelloCommandException("Invalid command: " + telloCommand));
+
+      try 
+      {
+        TelloCommands.validate(commands[i]);
+      } catch (TelloCommandException e) {
+        return failed(new TelloCommandException("command " + (i + 1) + " " + e.getMessage()));
+      }
 
+      data[i] = EncodedCommand.of(telloCommand);
+      results.add(new CommandResult(commands[i]));
+    }
+
+    if (!isConnected()) return failed(new TelloConnectionException("No connection"));
+
+    logger.fine("executing " + count + " commands");
+
+    CompletableFuture<List<CommandResult>> batch = new CompletableFuture<>();
+
+    executeStep(commands, data, results, 0, batch);
+
+    return batch;
+  }
+
+  // Send one command of a batch, then the next one from the response
+  // callback so commands follow each other with no caller thread wake up
+  // in between. Stops at the first failure, leaving the rest skipped.
+  private void executeStep(String[] commands, EncodedCommand[] data, List<CommandResult> results, int step,
+                           CompletableFuture<List<CommandResult>> batch)
+  {
+    if (step == commands.length)
+    {
+      batch.complete(results);
+      return;
+    }
+
+    String command = commands[step];
+    CommandResult result = results.get(step);
+
+    result.sent(System.nanoTime());
+
+    sendCommand(command, data[step], false).whenComplete((response, e) ->
+    {
+      try
+      {
+        RuntimeException error = null;
+
+        if (e != null)
+        {
+          // A command failed before sending, such as with no connection,
+          // holds the exception itself.
+          Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+          error = cause instanceof RuntimeException ? (RuntimeException) cause
+                                                    : new TelloConnectionException(cause);
+        }
+        else
+        {
+          try 
+          {
+            if (command.endsWith("?")) checkReadResponse(response); else checkResponse(response);
+          } catch (RuntimeException ex) {
+            error = ex;
+          }
+        }
+
+        result.completed(response, error);
+
+        if (error != null)
+        {
+          logger.fine("batch stopped at command " + (step + 1) + " of " + commands.length + ": " + result);
+          batch.complete(results);
+        }
+        else
+          executeStep(commands, data, results, step + 1, batch);
+      }
+      catch (RuntimeException ex)
+      {
+        // Never leave the caller waiting on the batch.
+        batch.completeExceptionally(ex);
+      }
+    });
   }
 
   @Override
   public void disconnect() 
   {
-	if (dsStatus != null) dsStatus.close();
+	connected = false;
 	
-	if (ds != null) ds.close();
+	rcChannel.stop();
+	
+	if (ownsTransport)
+	{
+	  if (transport != null) transport.close();
+	
+	  transport = null;
+	}
+	else transport.unregister(droneAddress);
+	
+	// Release any callers still waiting for a response.
+	tracker.failAll("Disconnected");
+	
+	statusPackets.clear();
 	
 	logger.info("Disconnected!");
   }
   
+  private boolean isConnected()
+  {
+    return connected && transport != null && transport.isOpen();
+  }
+
+  /**
+   * Deliver status packets to a listener on the transport thread instead of
+   * queuing them for receiveStatusData().
+   * @param listener Listener to receive status packets, null to queue them again.
+   */
+  public void setStatusListener(TelloStatusListener listener)
+  {
+    statusListener = listener;
+  }
+
+  /**
+   * Record all status packets, commands and responses exchanged with the
+   * drone. The recorder is not closed here.
+   * @param recorder Recorder to use, null to stop recording.
+   */
+  public void setFlightRecorder(FlightRecorder recorder)
+  {
+    this.recorder = recorder;
+  }
+
+  /**
+   * Returns the channel sending rc commands to this drone.
+   * @return The rc channel.
+   */
+  public RcChannel getRcChannel()
+  {
+    return rcChannel;
+  }
+
+  /**
+   * Returns true if a command is waiting for its response.
+   */
+  boolean isCommandPending()
+  {
+    return tracker.hasPending();
+  }
+
+  /**
+   * Returns the scheduler of the transport carrying this drone's traffic.
+   * @return The scheduler or null if not connected.
+   */
+  public ScheduledExecutorService getScheduler()
+  {
+    return transport == null ? null : transport.getScheduler();
+  }
+  
+  // Commands are encoded into a per thread buffer, the channel copies the
+  // datagram before send returns so the buffer is free again at once.
   private void sendData(String data) throws IOException 
   {
-    byte[] sendData = data.getBytes();
-    final DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, ipAddress, udpPort);
-    ds.send(sendPacket);
+    ByteBuffer buffer = sendBuffer.get();
+
+    buffer.clear();
+    CommandEncoder.put(buffer, data);
+    buffer.flip();
+
+    sendData(buffer);
+  }
+
+  private void sendData(EncodedCommand command) throws IOException 
+  {
+    ByteBuffer buffer = sendBuffer.get();
+
+    buffer.clear();
+    command.writeTo(buffer);
+    buffer.flip();
+
+    sendData(buffer);
+  }
+
+  private void sendData(ByteBuffer buffer) throws IOException 
+  {
+    FlightRecorder recorder = this.recorder;
+
+    if (recorder != null) recorder.record(FlightRecorder.COMMAND, buffer, System.nanoTime());
+
+    transport.send(droneAddress, buffer);
+  }
+
+  // Send a command expecting no response, without waiting for the send
+  // lock held by callers of sendCommand().
+  void sendRaw(ByteBuffer data) throws IOException
+  {
+    if (!isConnected()) throw new TelloConnectionException("No connection");
+
+    FlightRecorder recorder = this.recorder;
+
+    if (recorder != null) recorder.record(FlightRecorder.COMMAND, data, System.nanoTime());
+
+    transport.send(droneAddress, data);
+  }
+
+  // Send a command and return a future completed by the next response
+  // from the drone. The future fails with a TelloConnectionException if no
+  // response arrives within the command's timeout, after any retries.
+  // Does not wait for the response.
+  // Priority commands skip the send lock, so one may be in flight with the
+  // command of the caller holding the lock. The command tracker hands each
+  // response to the oldest command whose expected shape it fits, so a
+  // priority "ok" is not taken by a query. Two control commands both expect
+  // "ok" and their responses may be matched the wrong way round: a stop's
+  // "ok" may complete the move it interrupted, leaving the stop to wait for
+  // the move's response. TelloControl.stop() does not wait for this reason.
+  private CompletableFuture<String> sendCommand(String command, boolean priority)
+  {
+    return sendCommand(command, null, priority);
+  }
+
+  private static EncodedCommand encoded(TelloCommandInterface telloCommand)
+  {
+    return telloCommand instanceof EncodedCommand ? (EncodedCommand) telloCommand : null;
+  }
+
+  // As above, with the command already encoded, encoded null to encode it here.
+  private CompletableFuture<String> sendCommand(String command, EncodedCommand data, boolean priority)
+  {
+    if (retryPolicy.getMaxRetries() == 0 || !RetryPolicy.isIdempotent(command)) return sendOnce(command, data, priority);
+
+    CompletableFuture<String> result = new CompletableFuture<>();
+
+    attempt(command, data, priority, 0, System.nanoTime(), result);
+
+    return result;
+  }
+
+  // Send an idempotent command, sending it again after a jittered backoff
+  // if the response times out.
+  private void attempt(String command, EncodedCommand data, boolean priority, int attempt, long firstSendTime,
+                       CompletableFuture<String> result)
+  {
+    sendOnce(command, data, priority).whenComplete((response, e) ->
+    {
+      if (e == null)
+      {
+        if (attempt > 0) retryPolicy.recovered(firstSendTime);
+        result.complete(response);
+        return;
+      }
+
+      TelloTransport transport = this.transport;
+      boolean timedOut = e.getCause() instanceof SocketTimeoutException;
+
+      if (timedOut && connected && transport != null && retryPolicy.shouldRetry(command, attempt))
+      {
+        retryPolicy.retried();
+        logger.fine("retrying command: " + command);
+
+        // Tracked during the backoff so disconnect() fails it, the retry
+        // task is dropped when the scheduler shuts down.
+        tracker.retrying(result);
+
+        try
+        {
+          transport.getScheduler().schedule(() -> retry(command, data, priority, attempt + 1, firstSendTime, result),
+                                            retryPolicy.backoff(attempt), TimeUnit.NANOSECONDS);
+        }
+        catch (RejectedExecutionException ex)
+        {
+          result.completeExceptionally(new TelloConnectionException("No connection"));
+        }
+        return;
+      }
+
+      if (timedOut && attempt > 0) retryPolicy.gaveUp();
+
+      result.completeExceptionally(e);
+    });
+  }
+
+  // Run a retry on the scheduler, failing the command if it can't be sent.
+  private void retry(String command, EncodedCommand data, boolean priority, int attempt, long firstSendTime,
+                     CompletableFuture<String> result)
+  {
+    try
+    {
+      attempt(command, data, priority, attempt, firstSendTime, result);
+    }
+    catch (RuntimeException e)
+    {
+      result.completeExceptionally(e);
+    }
+  }
+
+  private CompletableFuture<String> sendOnce(String command, EncodedCommand data, boolean priority)
+  {
+    PendingCommand response = new PendingCommand(command);
+    long start = System.nanoTime();
+
+    if (priority)
+    {
+      tracker.add(response);
+
+      if (!send(command, data, response)) return response;
+
+      prioritySendLatency.recordSince(start);
+    }
+    else
+    {
+      synchronized (sendLock)
+      {
+        tracker.add(response);
+
+        if (!send(command, data, response)) return response;
+      }
+
+      sendLatency.recordSince(start);
+    }
+
+    ScheduledFuture<?> timeout = transport.getScheduler().schedule(() ->
+    {
+      if (response.completeExceptionally(new TelloConnectionException(new SocketTimeoutException("Receive timed out"))))
+      {
+        tracker.timedOut(response);
+        timeoutPolicy.timedOut(command);
+      }
+    }, timeoutPolicy.timeout(command, socketTimeout), TimeUnit.MILLISECONDS);
+
+    response.whenComplete((r, e) ->
+    {
+      timeout.cancel(false);
+      if (e == null) 
+      {
+        lastActivityTime = System.nanoTime();
+        timeoutPolicy.responded(command, System.nanoTime() - response.sendTime);
+      }
+    });
+
+    return response;
+  }
+
+  private boolean send(String command, EncodedCommand data, PendingCommand response)
+  {
+    try 
+    {
+      timeoutPolicy.sent(command);
+      if (data != null) sendData(data); else sendData(command);
+      return true;
+    } catch (Exception e) {
+      tracker.remove(response);
+      response.completeExceptionally(new TelloConnectionException(e));
+      return false;
+    }
+  }
+
+  /**
+   * Returns the time the drone last answered a command, the last traffic
+   * known to have reset its command timeout. Rc commands get no answer and
+   * are not counted.
+   * @return System.nanoTime() of the answer.
+   */
+  public long getLastActivityTime()
+  {
+    return lastActivityTime;
+  }
+
+  /**
+   * Returns the time the last control command was answered. Telemetry
+   * received before it may not show the effect of the command.
+   * @return System.nanoTime() of the response.
+   */
+  public long getLastControlResponseTime()
+  {
+    return lastControlResponseTime;
+  }
+
+  /**
+   * Returns the policy deciding how long each command waits for its
+   * response, with the response times it has learned from.
+   * @return The timeout policy.
+   */
+  public TimeoutPolicy getTimeoutPolicy()
+  {
+    return timeoutPolicy;
+  }
+
+  /**
+   * Returns the policy deciding which commands are sent again when their
+   * response is lost, with retry counts.
+   * @return The retry policy.
+   */
+  public RetryPolicy getRetryPolicy()
+  {
+    return retryPolicy;
+  }
+
+  /**
+   * Returns number of responses discarded as late replies to commands
+   * that had timed out.
+   * @return Late response count.
+   */
+  public long getLateResponses()
+  {
+    return tracker.getLate();
   }
 
-  private String receiveData() throws IOException 
+  /**
+   * Returns number of responses discarded because they did not fit the
+   * command waiting for a response or no command was waiting.
+   * @return Mismatched response count.
+   */
+  public long getMismatchedResponses()
   {
-    byte[] receiveData = new byte[1024];
-    final DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-    ds.receive(receivePacket);
-    return trimExecutionResponse(receiveData, receivePacket);
+    return tracker.getMismatched();
+  }
+
+  /**
+   * Returns time taken to send commands, from call to datagram sent,
+   * including any wait for other callers sending.
+   * @return Send latency histogram.
+   */
+  public LatencyHistogram getSendLatency()
+  {
+    return sendLatency;
+  }
+
+  /**
+   * Returns time taken to send priority commands.
+   * @return Priority send latency histogram.
+   */
+  public LatencyHistogram getPrioritySendLatency()
+  {
+    return prioritySendLatency;
+  }
+
+  /**
+   * Wait for the result of an async command. Failures are rethrown as the
+   * TelloCommandException or TelloConnectionException the command failed with.
+   * @param result The async command result.
+   * @return The result value.
+   */
+  public static <T> T await(CompletableFuture<T> result) throws TelloConnectionException, TelloCommandException
+  {
+    try 
+    {
+      return result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new TelloConnectionException(e.getCause());
+    } catch (CancellationException e) {
+      throw new TelloConnectionException("Command cancelled", e);
+    }
+  }
+
+  private static <T> CompletableFuture<T> failed(RuntimeException e)
+  {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    result.completeExceptionally(e);
+    return result;
   }
 
   public String receiveStatusData() throws IOException 
   {
-    byte[] receiveData = new byte[1024];
-    final DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-    dsStatus.receive(receivePacket);
-    return trimExecutionResponse(receiveData, receivePacket);
+    String status;
+
+    try 
+    {
+      status = statusPackets.poll(socketTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Receive interrupted");
+    }
+
+    if (status == null) throw new SocketTimeoutException("Receive timed out");
+
+    return status;
   }
 
-  private String trimExecutionResponse(byte[] response, DatagramPacket receivePacket) 
+  private static String decode(ByteBuffer data)
   {
-    response = Arrays.copyOf(response, receivePacket.getLength());
-    return new String(response, StandardCharsets.UTF_8);
+    return StandardCharsets.UTF_8.decode(data).toString();
+  }
+
+  // Receives datagrams from this drone on the transport selector thread.
+  private class ResponseListener implements TransportListener
+  {
+    @Override
+    public void responseReceived(ByteBuffer data, long receiveTime)
+    {
+      FlightRecorder recorder = TelloCommunication.this.recorder;
+
+      if (recorder != null) recorder.record(FlightRecorder.RESPONSE, data, receiveTime);
+
+      tracker.responseReceived(decode(data));
+    }
+
+    @Override
+    public void statusReceived(ByteBuffer data, long receiveTime)
+    {
+      FlightRecorder recorder = TelloCommunication.this.recorder;
+
+      if (recorder != null) recorder.record(FlightRecorder.STATUS, data, receiveTime);
+
+      TelloStatusListener listener = statusListener;
+
+      if (listener != null)
+      {
+        listener.statusReceived(data, receiveTime);
+        return;
+      }
+
+      String status = decode(data);
+
+      // Drop the oldest packet if the reader has fallen behind.
+      while (!statusPackets.offer(status)) statusPackets.poll();
+    }
   }
   
+  /**
+   * Set the longest time to wait for a response or status packet. Takes
+   * effect for the next command sent. Commands wait less when their
+   * timeout policy expects a quicker response, see getTimeoutPolicy().
+   * @param ms Timeout in milliseconds.
+   */
   public void setTimeout(int ms) 
   {
 	  socketTimeout = ms;
   }
   
+  /**
+   * Returns the longest time to wait for a response or status packet.
+   * @return Timeout in milliseconds.
+   */
   public int getTimeout() 
   {
 	  return socketTimeout;
@@ -3,6 +3,7 @@ package tellolib.communication;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import tellolib.command.TelloCommandInterface;
 
@@ -34,10 +35,39 @@ public interface TelloCommunicationInterface
   String executeReadCommand(final TelloCommandInterface telloCommand);
 
   /**
-   * Executes a list of commands on Tello drone.
+   * Executes command on Tello drone without waiting for the response.
+   * @param telloCommand The command to be executed.
+   * @return Future completed when the drone responds ok, or failed with
+   * TelloCommandException or TelloConnectionException as executeCommand would throw.
+   */
+  CompletableFuture<Void> executeCommandAsync(final TelloCommandInterface telloCommand);
+
+  /**
+   * Executes command on Tello drone that returns data without waiting for the response.
+   * @param telloCommand The command to be executed.
+   * @return Future completed with data returned from Tello, or failed with
+   * TelloCommandException or TelloConnectionException as executeReadCommand would throw.
+   */
+  CompletableFuture<String> executeReadCommandAsync(final TelloCommandInterface telloCommand);
+
+  /**
+   * Executes a list of commands on Tello drone, each sent as soon as the
+   * previous one is answered. All commands are composed before any is sent.
+   * Stops at the first command that fails.
+   * @param telloCommandList The list of commands to be executed.
+   * @return Result of each command in list order, commands after a failure
+   * are marked skipped.
+   */
+  List<CommandResult> executeCommands(final List<TelloCommandInterface> telloCommandList);
+
+  /**
+   * Executes a list of commands on Tello drone without waiting for them.
    * @param telloCommandList The list of commands to be executed.
+   * @return Future completed with the result of each command once the list
+   * is done or a command failed. Fails with TelloCommandException if a
+   * command is null or empty, nothing is sent in that case.
    */
-  void executeCommands(final List<TelloCommandInterface> telloCommandList);
+  CompletableFuture<List<CommandResult>> executeCommandsAsync(final List<TelloCommandInterface> telloCommandList);
 
   /**
    * Disconnect from the Tello. Close sockets.
@@ -47,8 +77,10 @@ public interface TelloCommunicationInterface
   /**
    * Obtains data about the Tello drone.
    *
-   * @param valuesToBeObtained Values (names) to be obtained from the drone.
-   * @return Map of the data.
+   * All values are queried at once.
+   * @param valuesToBeObtained Values (names) to be obtained from the drone,
+   * read commands such as "battery" or "battery?".
+   * @return Map of the data in request order, values that failed are left out.
    */
   Map<String, String> getTelloOnBoardData(List<String> valuesToBeObtained);
   
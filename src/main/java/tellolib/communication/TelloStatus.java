@@ -0,0 +1,237 @@
+package tellolib.communication;
+
+/**
+ * Values decoded from one Tello status packet by {@link TelloStatusParser}.
+ * Fields are primitives so an instance can be reused for every packet.
+ * Not thread safe, owned by the thread receiving status packets.
+ */
+public class TelloStatus
+{
+  int missionPadId, missionPadX, missionPadY, missionPadZ;
+  int missionPadPitch, missionPadRoll, missionPadYaw;
+  int pitch, roll, yaw;
+  int velocityX, velocityY, velocityZ;
+  int tempLow, tempHigh, tof, height, battery, time;
+  double barometer;
+  double accelerationX, accelerationY, accelerationZ;
+
+  /**
+   * Reset all values to zero before a packet is decoded.
+   */
+  void clear()
+  {
+    missionPadId = missionPadX = missionPadY = missionPadZ = 0;
+    missionPadPitch = missionPadRoll = missionPadYaw = 0;
+    pitch = roll = yaw = 0;
+    velocityX = velocityY = velocityZ = 0;
+    tempLow = tempHigh = tof = height = battery = time = 0;
+    barometer = accelerationX = accelerationY = accelerationZ = 0;
+  }
+
+  /**
+   * Returns mission pad id.
+   * @return Pad id 1-8 or negative if no pad detected.
+   */
+  public int getMissionPadId()
+  {
+    return missionPadId;
+  }
+
+  /**
+   * Returns mission pad x in cm.
+   * @return Mission pad x in cm.
+   */
+  public int getMissionPadX()
+  {
+    return missionPadX;
+  }
+
+  /**
+   * Returns mission pad y in cm.
+   * @return Mission pad y in cm.
+   */
+  public int getMissionPadY()
+  {
+    return missionPadY;
+  }
+
+  /**
+   * Returns mission pad z in cm.
+   * @return Mission pad z in cm.
+   */
+  public int getMissionPadZ()
+  {
+    return missionPadZ;
+  }
+
+  /**
+   * Returns mission pad pitch in degrees.
+   * @return Mission pad pitch in degrees.
+   */
+  public int getMissionPadPitch()
+  {
+    return missionPadPitch;
+  }
+
+  /**
+   * Returns mission pad roll in degrees.
+   * @return Mission pad roll in degrees.
+   */
+  public int getMissionPadRoll()
+  {
+    return missionPadRoll;
+  }
+
+  /**
+   * Returns mission pad yaw in degrees.
+   * @return Mission pad yaw in degrees.
+   */
+  public int getMissionPadYaw()
+  {
+    return missionPadYaw;
+  }
+
+  /**
+   * Returns pitch in degrees.
+   * @return Pitch in degrees.
+   */
+  public int getPitch()
+  {
+    return pitch;
+  }
+
+  /**
+   * Returns roll in degrees.
+   * @return Roll in degrees.
+   */
+  public int getRoll()
+  {
+    return roll;
+  }
+
+  /**
+   * Returns raw yaw in degrees.
+   * @return Raw yaw in degrees.
+   */
+  public int getYaw()
+  {
+    return yaw;
+  }
+
+  /**
+   * Returns velocity x in cm/s.
+   * @return Velocity x in cm/s.
+   */
+  public int getVelocityX()
+  {
+    return velocityX;
+  }
+
+  /**
+   * Returns velocity y in cm/s.
+   * @return Velocity y in cm/s.
+   */
+  public int getVelocityY()
+  {
+    return velocityY;
+  }
+
+  /**
+   * Returns velocity z in cm/s.
+   * @return Velocity z in cm/s.
+   */
+  public int getVelocityZ()
+  {
+    return velocityZ;
+  }
+
+  /**
+   * Returns lowest temperature in degrees C.
+   * @return Lowest temperature in degrees C.
+   */
+  public int getTempLow()
+  {
+    return tempLow;
+  }
+
+  /**
+   * Returns highest temperature in degrees C.
+   * @return Highest temperature in degrees C.
+   */
+  public int getTempHigh()
+  {
+    return tempHigh;
+  }
+
+  /**
+   * Returns TOF distance in cm.
+   * @return TOF distance in cm.
+   */
+  public int getTof()
+  {
+    return tof;
+  }
+
+  /**
+   * Returns height in cm.
+   * @return Height in cm.
+   */
+  public int getHeight()
+  {
+    return height;
+  }
+
+  /**
+   * Returns battery level 0-100%.
+   * @return Battery level 0-100%.
+   */
+  public int getBattery()
+  {
+    return battery;
+  }
+
+  /**
+   * Returns motor on time in seconds.
+   * @return Motor on time in seconds.
+   */
+  public int getTime()
+  {
+    return time;
+  }
+
+  /**
+   * Returns barometer height in cm.
+   * @return Barometer height in cm.
+   */
+  public double getBarometer()
+  {
+    return barometer;
+  }
+
+  /**
+   * Returns acceleration x in .001 g.
+   * @return Acceleration x in .001 g.
+   */
+  public double getAccelerationX()
+  {
+    return accelerationX;
+  }
+
+  /**
+   * Returns acceleration y in .001 g.
+   * @return Acceleration y in .001 g.
+   */
+  public double getAccelerationY()
+  {
+    return accelerationY;
+  }
+
+  /**
+   * Returns acceleration z in .001 g.
+   * @return Acceleration z in .001 g.
+   */
+  public double getAccelerationZ()
+  {
+    return accelerationZ;
+  }
+}
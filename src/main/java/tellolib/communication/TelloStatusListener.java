@@ -0,0 +1,18 @@
+package tellolib.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the status packets of one drone as they arrive. Called on the
+ * transport selector thread, must return quickly. The buffer is reused by
+ * the transport and is only valid for the duration of the call.
+ */
+public interface TelloStatusListener
+{
+  /**
+   * Called when a status packet arrives from the drone.
+   * @param data Status data, positioned at the start of the packet.
+   * @param receiveTime System.nanoTime() when the packet was read.
+   */
+  void statusReceived(ByteBuffer data, long receiveTime);
+}
@@ -0,0 +1,200 @@
+package tellolib.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes Tello status packets ("mid:-1;x:0;...;agz:-998.00;\r\n") directly
+ * from the receive buffer into a {@link TelloStatus}. Keys are matched and
+ * numbers converted byte by byte, so decoding a packet allocates nothing.
+ * Not thread safe, use one parser per receiving thread.
+ */
+public class TelloStatusParser
+{
+  // Keys packed into a long one byte per character, see key().
+  private static final long MID = key("mid"), X = key("x"), Y = key("y"), Z = key("z"), MPRY = key("mpry");
+  private static final long PITCH = key("pitch"), ROLL = key("roll"), YAW = key("yaw");
+  private static final long VGX = key("vgx"), VGY = key("vgy"), VGZ = key("vgz");
+  private static final long TEMPL = key("templ"), TEMPH = key("temph"), TOF = key("tof"), H = key("h");
+  private static final long BAT = key("bat"), BARO = key("baro"), TIME = key("time");
+  private static final long AGX = key("agx"), AGY = key("agy"), AGZ = key("agz");
+
+  private static final long[] KEYS = {MID, X, Y, Z, PITCH, ROLL, YAW, VGX, VGY, VGZ, TEMPL, TEMPH, TOF, H, BAT, BARO, TIME,
+                                      AGX, AGY, AGZ};
+
+  private static final double[] POWERS_OF_TEN = new double[19];
+
+  static
+  {
+    POWERS_OF_TEN[0] = 1;
+
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+  }
+
+  // Result of the last parseNumber() call.
+  private long mantissa;
+  private int scale;
+
+  /**
+   * Decode a status packet. Reads the bytes from position to limit without
+   * changing the buffer position. Unknown keys are skipped with their
+   * values, whatever the values hold.
+   * @param data Buffer holding the packet.
+   * @param status Receives the decoded values, cleared first.
+   * @return True if the packet was decoded, false if it was malformed.
+   */
+  public boolean parse(ByteBuffer data, TelloStatus status)
+  {
+    int i = data.position(), end = data.limit(), pairs = 0;
+
+    status.clear();
+
+    while (i < end)
+    {
+      byte b = data.get(i);
+
+      // Skip white space between pairs and the trailing \r\n.
+      if (b <= ' ') { i++; continue; }
+
+      long key = 0;
+      int keyLength = 0;
+
+      while (i < end && (b = data.get(i)) != ':')
+      {
+        if (b == ';') return false;
+        if (++keyLength <= 8) key = (key << 8) | (b & 0xff);
+        i++;
+      }
+
+      if (i++ >= end) return false;
+
+      // Longer than any known key.
+      if (keyLength > 8)
+        i = skipValue(data, i, end);
+      else if (key == MPRY)
+      {
+        if ((i = parseNumber(data, i, end)) < 0) return false;
+        status.missionPadPitch = (int) mantissa;
+        if (i >= end || data.get(i++) != ',' || (i = parseNumber(data, i, end)) < 0) return false;
+        status.missionPadRoll = (int) mantissa;
+        if (i >= end || data.get(i++) != ',' || (i = parseNumber(data, i, end)) < 0) return false;
+        status.missionPadYaw = (int) mantissa;
+      }
+      else
+      {
+        int next = parseNumber(data, i, end);
+
+        if (next >= 0 && (next >= end || data.get(next) == ';'))
+        {
+          i = next;
+          store(key, status);
+        }
+        else if (known(key))
+          return false;
+        else
+          i = skipValue(data, i, end);
+      }
+
+      if (i < end && data.get(i) != ';') return false;
+
+      i++;
+      pairs++;
+    }
+
+    return pairs > 0;
+  }
+
+  // Parse an optionally signed decimal number starting at index i into
+  // mantissa and scale. Returns the index after the number or -1 if there
+  // is no number.
+  private int parseNumber(ByteBuffer data, int i, int end)
+  {
+    boolean negative = false, point = false;
+    int digits = 0;
+
+    mantissa = 0;
+    scale = 0;
+
+    if (i < end && data.get(i) == '-') { negative = true; i++; }
+
+    for (; i < end; i++)
+    {
+      byte b = data.get(i);
+
+      if (b >= '0' && b <= '9')
+      {
+        if (++digits > 18) return -1;
+        mantissa = mantissa * 10 + (b - '0');
+        if (point) scale++;
+      }
+      else if (b == '.' && !point)
+        point = true;
+      else
+        break;
+    }
+
+    if (digits == 0) return -1;
+
+    if (negative) mantissa = -mantissa;
+
+    return i;
+  }
+
+  // Returns the index of the ';' ending the value starting at index i, or
+  // end if there is none.
+  private static int skipValue(ByteBuffer data, int i, int end)
+  {
+    while (i < end && data.get(i) != ';') i++;
+
+    return i;
+  }
+
+  private static boolean known(long key)
+  {
+    for (long k : KEYS) if (k == key) return true;
+
+    return false;
+  }
+
+  private double doubleValue()
+  {
+    return scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+  }
+
+  private int intValue()
+  {
+    return scale == 0 ? (int) mantissa : (int) doubleValue();
+  }
+
+  private void store(long key, TelloStatus status)
+  {
+    if (key == MID) status.missionPadId = intValue();
+    else if (key == X) status.missionPadX = intValue();
+    else if (key == Y) status.missionPadY = intValue();
+    else if (key == Z) status.missionPadZ = intValue();
+    else if (key == PITCH) status.pitch = intValue();
+    else if (key == ROLL) status.roll = intValue();
+    else if (key == YAW) status.yaw = intValue();
+    else if (key == VGX) status.velocityX = intValue();
+    else if (key == VGY) status.velocityY = intValue();
+    else if (key == VGZ) status.velocityZ = intValue();
+    else if (key == TEMPL) status.tempLow = intValue();
+    else if (key == TEMPH) status.tempHigh = intValue();
+    else if (key == TOF) status.tof = intValue();
+    else if (key == H) status.height = intValue();
+    else if (key == BAT) status.battery = intValue();
+    else if (key == BARO) status.barometer = doubleValue();
+    else if (key == TIME) status.time = intValue();
+    else if (key == AGX) status.accelerationX = doubleValue();
+    else if (key == AGY) status.accelerationY = doubleValue();
+    else if (key == AGZ) status.accelerationZ = doubleValue();
+  }
+
+  private static long key(String name)
+  {
+    long key = 0;
+
+    for (int i = 0; i < name.length(); i++) key = (key << 8) | (name.charAt(i) & 0xff);
+
+    return key;
+  }
+}
@@ -0,0 +1,275 @@
+package tellolib.communication;
+
+import tellolib.exception.TelloConnectionException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking UDP transport for Tello drones. One selector thread owns the
+ * command and status datagram channels, reads every incoming datagram and
+ * hands it to the listener registered for the drone that sent it. Sends are
+ * done on the caller's thread and never wait for a reply. A single scheduler
+ * thread runs response timeouts and other timed work for the drones using
+ * the transport.
+ */
+public class TelloTransport
+{
+  private final Logger logger = Logger.getLogger("Tello");
+
+  /**
+   * Local UDP ports the command and status channels are bound to.
+   */
+  private final int commandPort, statusPort;
+
+  private DatagramChannel commandChannel, statusChannel;
+  private Selector selector;
+  private Thread selectorThread;
+  private ScheduledThreadPoolExecutor scheduler;
+
+  /**
+   * Receive buffer, only used by the selector thread.
+   */
+  private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(2048);
+
+  /**
+   * Listeners by drone command address, and by drone ip address for status
+   * packets which may come from a different drone port.
+   */
+  private final Map<SocketAddress, TransportListener> listeners = new ConcurrentHashMap<>();
+  private final Map<InetAddress, TransportListener> statusListeners = new ConcurrentHashMap<>();
+
+  /**
+   * Create a transport that will bind the given local ports when opened.
+   * @param commandPort Local port for sending commands and receiving responses.
+   * @param statusPort Local port for receiving the status feed.
+   */
+  public TelloTransport(int commandPort, int statusPort)
+  {
+    this.commandPort = commandPort;
+    this.statusPort = statusPort;
+  }
+
+  /**
+   * Bind the channels and start the selector thread.
+   */
+  public synchronized void open() throws TelloConnectionException
+  {
+    if (isOpen()) return;
+
+    try
+    {
+      selector = Selector.open();
+
+      commandChannel = DatagramChannel.open();
+      commandChannel.bind(new InetSocketAddress(commandPort));
+      commandChannel.configureBlocking(false);
+      commandChannel.register(selector, SelectionKey.OP_READ, Boolean.FALSE);
+
+      statusChannel = DatagramChannel.open();
+      statusChannel.bind(new InetSocketAddress(statusPort));
+      statusChannel.configureBlocking(false);
+      statusChannel.register(selector, SelectionKey.OP_READ, Boolean.TRUE);
+    } catch (Exception e) {
+      closeChannels();
+      throw new TelloConnectionException("Transport open failed", e);
+    }
+
+    scheduler = new ScheduledThreadPoolExecutor(1, runnable ->
+    {
+      Thread thread = new Thread(runnable, "TelloScheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    
+    // Timeouts are usually cancelled when the response arrives, drop them
+    // from the queue right away.
+    scheduler.setRemoveOnCancelPolicy(true);
+
+    selectorThread = new SelectorThread();
+    selectorThread.start();
+  }
+
+  /**
+   * Stop the selector thread and close the channels.
+   */
+  public synchronized void close()
+  {
+    if (selectorThread != null)
+    {
+      try
+      {
+        // Signal thread to stop, interrupt wakes the selector.
+        selectorThread.interrupt();
+        // Wait for thread to stop.
+        selectorThread.join(2000);
+      } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+      selectorThread = null;
+    }
+
+    if (scheduler != null) scheduler.shutdownNow();
+
+    scheduler = null;
+
+    closeChannels();
+  }
+
+  /**
+   * Returns transport state.
+   * @return True if channels are open, false if not.
+   */
+  public boolean isOpen()
+  {
+    return commandChannel != null && commandChannel.isOpen();
+  }
+
+  /**
+   * Returns the scheduler shared by drones using this transport.
+   * @return The scheduler or null if transport not open.
+   */
+  public ScheduledExecutorService getScheduler()
+  {
+    return scheduler;
+  }
+
+  /**
+   * Route datagrams from a drone to a listener.
+   * @param drone Drone ip address and command port.
+   * @param listener Listener to receive the drone's datagrams.
+   */
+  public void register(InetSocketAddress drone, TransportListener listener)
+  {
+    listeners.put(drone, listener);
+    statusListeners.put(drone.getAddress(), listener);
+  }
+
+  /**
+   * Stop routing datagrams from a drone.
+   * @param drone Drone ip address and command port.
+   */
+  public void unregister(InetSocketAddress drone)
+  {
+    TransportListener listener = listeners.remove(drone);
+
+    if (listener != null) statusListeners.remove(drone.getAddress(), listener);
+  }
+
+  /**
+   * Send a datagram to a drone from the command channel. Does not block.
+   * @param drone Drone ip address and command port.
+   * @param data Data to send, from position to limit.
+   * @throws IOException
+   */
+  public void send(InetSocketAddress drone, ByteBuffer data) throws IOException
+  {
+    DatagramChannel channel = commandChannel;
+
+    if (channel == null) throw new IOException("Transport not open");
+
+    if (channel.send(data, drone) == 0) throw new IOException("Send buffer full");
+  }
+
+  private void closeChannels()
+  {
+    try
+    {
+      if (statusChannel != null) statusChannel.close();
+      if (commandChannel != null) commandChannel.close();
+      if (selector != null) selector.close();
+    } catch (IOException e) { logger.warning("transport close failed: " + e.getMessage()); }
+
+    statusChannel = commandChannel = null;
+    selector = null;
+  }
+
+  // Thread that waits on the selector and dispatches every datagram read
+  // from the channels to the listener of the drone that sent it.
+  private class SelectorThread extends Thread
+  {
+    SelectorThread()
+    {
+      this.setName("TelloTransport");
+      this.setDaemon(true);
+    }
+
+    public void run()
+    {
+      logger.fine("transport thread start");
+
+      try
+      {
+        while (!isInterrupted())
+        {
+          selector.select();
+
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+          while (keys.hasNext())
+          {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            if (key.isValid() && key.isReadable())
+              drain((DatagramChannel) key.channel(), (Boolean) key.attachment());
+          }
+        }
+      }
+      catch (Exception e)
+      {
+        if (!isInterrupted()) logger.severe("transport failed: " + e.getMessage());
+      }
+
+      logger.fine("transport thread ended");
+    }
+
+    // Read all datagrams currently queued on the channel.
+    private void drain(DatagramChannel channel, boolean status) throws IOException
+    {
+      SocketAddress source;
+
+      while (true)
+      {
+        receiveBuffer.clear();
+
+        if ((source = channel.receive(receiveBuffer)) == null) return;
+
+        long receiveTime = System.nanoTime();
+
+        receiveBuffer.flip();
+
+        TransportListener listener = listeners.get(source);
+
+        if (listener == null && status)
+          listener = statusListeners.get(((InetSocketAddress) source).getAddress());
+
+        if (listener == null)
+        {
+          logger.finest("datagram from unknown source " + source);
+          continue;
+        }
+
+        try
+        {
+          if (status)
+            listener.statusReceived(receiveBuffer, receiveTime);
+          else
+            listener.responseReceived(receiveBuffer, receiveTime);
+        }
+        catch (Exception e) { logger.warning("transport listener failed: " + e.toString()); }
+      }
+    }
+  }
+}
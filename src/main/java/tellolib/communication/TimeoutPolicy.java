@@ -0,0 +1,248 @@
+package tellolib.communication;
+
+import java.util.concurrent.TimeUnit;
+
+import tellolib.command.TelloCommandValues;
+import tellolib.metrics.LatencyHistogram;
+
+/**
+ * Decides how long to wait for the response to each command. Read commands
+ * and quick settings are answered at once, so a lost reply should fail fast
+ * instead of stalling a control loop for the full timeout. Movement commands
+ * are answered when the movement is done, so their timeout is based on the
+ * time the movement should take at the current speed.
+ * <p>
+ * Starting from defaults, timeouts are refined from the response times
+ * observed, a few times the 99th percentile of each kind of command. They
+ * never exceed the communication timeout set by setTimeout().
+ */
+public class TimeoutPolicy
+{
+	// Until enough responses are seen.
+	private static final long	DEFAULT_QUERY_MILLIS = 500, DEFAULT_CONTROL_MILLIS = 1000, DEFAULT_OVERHEAD_MILLIS = 3000;
+
+	// Bounds of learned timeouts.
+	private static final long	MIN_QUERY_MILLIS = 100, MIN_CONTROL_MILLIS = 300, MIN_OVERHEAD_MILLIS = 1500;
+	private static final long	MAX_MILLIS = 30000;
+
+	private static final int	MIN_SAMPLES = 20, LEARN_INTERVAL = 16;
+	private static final double	MARGIN = 3;
+
+	// Fixed durations and rates of drone movements, conservative.
+	private static final long	TAKE_OFF_MILLIS = 8000, LAND_MILLIS = 8000, FLIP_MILLIS = 3000;
+	private static final double	ROTATION_DEGREES_PER_SECOND = 60;
+
+	private final LatencyHistogram	queryLatency = new LatencyHistogram("query response"),
+									controlLatency = new LatencyHistogram("control response"),
+									motionOverhead = new LatencyHistogram("motion overhead");
+
+	private volatile long		queryMillis = DEFAULT_QUERY_MILLIS, controlMillis = DEFAULT_CONTROL_MILLIS,
+								overheadMillis = DEFAULT_OVERHEAD_MILLIS;
+
+	// Speed set by the last speed command, cm/s.
+	private volatile int		speed = 100;
+
+	private volatile boolean	adaptive = true;
+
+	/**
+	 * Turn adaptive timeouts on or off. When off every command waits for
+	 * the communication timeout.
+	 * @param adaptive True for per command timeouts.
+	 */
+	public void setAdaptive(boolean adaptive)
+	{
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * Returns adaptive state.
+	 * @return True if per command timeouts are used.
+	 */
+	public boolean isAdaptive()
+	{
+		return adaptive;
+	}
+
+	/**
+	 * Response times of read commands.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getQueryLatency()
+	{
+		return queryLatency;
+	}
+
+	/**
+	 * Response times of control commands other than movements.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getControlLatency()
+	{
+		return controlLatency;
+	}
+
+	/**
+	 * Time movement commands took beyond their expected movement time.
+	 * @return Latency histogram.
+	 */
+	public LatencyHistogram getMotionOverhead()
+	{
+		return motionOverhead;
+	}
+
+	/**
+	 * Timeout for a command.
+	 * @param command The command text.
+	 * @param maxMillis Communication timeout, upper bound.
+	 * @return Timeout in milliseconds.
+	 */
+	public long timeout(String command, long maxMillis)
+	{
+		if (!adaptive) return maxMillis;
+
+		long timeout;
+
+		if (command.endsWith("?"))
+			timeout = queryMillis;
+		else
+		{
+			long motion = motionMillis(command);
+
+			timeout = motion < 0 ? controlMillis : motion * 3 / 2 + overheadMillis;
+		}
+
+		return Math.min(timeout, maxMillis);
+	}
+
+	/**
+	 * Note a command being sent.
+	 * @param command The command text.
+	 */
+	void sent(String command)
+	{
+		if (command.startsWith(TelloCommandValues.SPEED + " "))
+		{
+			try
+			{
+				speed = Math.max(10, Integer.parseInt(command.substring(TelloCommandValues.SPEED.length() + 1).trim()));
+			}
+			catch (NumberFormatException e) { }
+		}
+	}
+
+	/**
+	 * Learn from a response.
+	 * @param command The command text.
+	 * @param responseNanos Time from send to response.
+	 */
+	void responded(String command, long responseNanos)
+	{
+		if (command.endsWith("?"))
+		{
+			queryLatency.record(responseNanos);
+
+			if (learn(queryLatency)) queryMillis = learned(queryLatency, MIN_QUERY_MILLIS);
+
+			return;
+		}
+
+		long motion = motionMillis(command);
+
+		if (motion < 0)
+		{
+			controlLatency.record(responseNanos);
+
+			if (learn(controlLatency)) controlMillis = learned(controlLatency, MIN_CONTROL_MILLIS);
+		}
+		else
+		{
+			motionOverhead.record(Math.max(0, responseNanos - TimeUnit.MILLISECONDS.toNanos(motion)));
+
+			if (learn(motionOverhead)) overheadMillis = learned(motionOverhead, MIN_OVERHEAD_MILLIS);
+		}
+	}
+
+	/**
+	 * Learn from a command that timed out. Doubles the timeout of its kind,
+	 * responses will refine it again, so a slower link does not keep
+	 * failing commands.
+	 * @param command The command text.
+	 */
+	void timedOut(String command)
+	{
+		if (command.endsWith("?"))
+			queryMillis = Math.min(queryMillis * 2, MAX_MILLIS);
+		else if (motionMillis(command) < 0)
+			controlMillis = Math.min(controlMillis * 2, MAX_MILLIS);
+		else
+			overheadMillis = Math.min(overheadMillis * 2, MAX_MILLIS);
+	}
+
+	private static boolean learn(LatencyHistogram histogram)
+	{
+		long count = histogram.getCount();
+
+		return count >= MIN_SAMPLES && count % LEARN_INTERVAL == 0;
+	}
+
+	private static long learned(LatencyHistogram histogram, long minMillis)
+	{
+		long p99 = TimeUnit.NANOSECONDS.toMillis(histogram.getPercentile(99));
+
+		return Math.max(minMillis, (long) (p99 * MARGIN));
+	}
+
+	// Expected duration of a movement command, -1 if not a movement.
+	private long motionMillis(String command)
+	{
+		String[] words = command.split(" ");
+
+		try
+		{
+			switch (words[0])
+			{
+				case TelloCommandValues.TAKE_OFF: return TAKE_OFF_MILLIS;
+				case TelloCommandValues.LAND: return LAND_MILLIS;
+				case TelloCommandValues.FLIP: return FLIP_MILLIS;
+
+				case TelloCommandValues.UP:
+				case TelloCommandValues.DOWN:
+				case TelloCommandValues.LEFT:
+				case TelloCommandValues.RIGHT:
+				case TelloCommandValues.FORWARD:
+				case TelloCommandValues.BACK:
+					return millis(Math.abs(Integer.parseInt(words[1])), speed);
+
+				case TelloCommandValues.CW:
+				case TelloCommandValues.CCW:
+					return (long) (Math.abs(Integer.parseInt(words[1])) * 1000 / ROTATION_DEGREES_PER_SECOND);
+
+				case TelloCommandValues.GO:
+					return millis(distance(words, 1), Integer.parseInt(words[4]));
+
+				case TelloCommandValues.JUMP:
+					return millis(distance(words, 1), Integer.parseInt(words[4]));
+
+				case TelloCommandValues.CURVE:
+					// Conservative arc length from the distances to both points.
+					double leg1 = distance(words, 1), leg2 = distance(words, 4);
+					return millis((leg1 + leg2) * 3 / 2, Integer.parseInt(words[7]));
+			}
+		}
+		catch (NumberFormatException | ArrayIndexOutOfBoundsException e) { }
+
+		return -1;
+	}
+
+	private static double distance(String[] words, int first)
+	{
+		double x = Integer.parseInt(words[first]), y = Integer.parseInt(words[first + 1]), z = Integer.parseInt(words[first + 2]);
+
+		return Math.sqrt(x * x + y * y + z * z);
+	}
+
+	private static long millis(double centimeters, int speed)
+	{
+		return (long) (centimeters * 1000 / Math.max(10, speed));
+	}
+}
@@ -0,0 +1,25 @@
+package tellolib.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives datagrams routed to a drone by {@link TelloTransport}. Methods are
+ * called on the transport selector thread and must return quickly. The buffer
+ * is reused by the transport and is only valid for the duration of the call.
+ */
+public interface TransportListener
+{
+  /**
+   * Called when a command response datagram arrives from the drone.
+   * @param data Response data, positioned at the start of the datagram.
+   * @param receiveTime System.nanoTime() when the datagram was read.
+   */
+  void responseReceived(ByteBuffer data, long receiveTime);
+
+  /**
+   * Called when a status datagram arrives from the drone.
+   * @param data Status data, positioned at the start of the datagram.
+   * @param receiveTime System.nanoTime() when the datagram was read.
+   */
+  void statusReceived(ByteBuffer data, long receiveTime);
+}
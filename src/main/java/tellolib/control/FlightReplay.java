@@ -0,0 +1,232 @@
+package tellolib.control;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import tellolib.command.TelloCommandValues;
+import tellolib.communication.FlightLogReader;
+import tellolib.communication.FlightRecorder;
+import tellolib.communication.TelloConnection;
+import tellolib.drone.TelloDrone;
+
+/**
+ * Plays back a flight recorded by {@link FlightRecorder} into a TelloDrone,
+ * without a drone. Status packets go through a {@link StatusMonitor} exactly
+ * as received live, so the drone's snapshot, history, heading, crash
+ * detection and telemetry bus subscribers see the recorded flight. Successful
+ * takeoff and land commands set the drone flying state.
+ * <p>
+ * Replay runs at the recorded pace times a speed factor, or as fast as
+ * possible. Receive times given to the status monitor keep the recorded
+ * spacing between packets, so time windows cover the same packets at any
+ * speed, but are only close to System.nanoTime() at real time speed.
+ */
+public class FlightReplay
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	/**
+	 * Speed factors.
+	 */
+	public static final double	REAL_TIME = 1, AS_FAST_AS_POSSIBLE = 0;
+
+	private final TelloDrone	drone;
+	private final StatusMonitor	monitor;
+
+	private volatile double		speed = REAL_TIME;
+	private volatile boolean	stopped;
+
+	// Commands awaiting a response, answered in order as by the drone.
+	private final ArrayDeque<String>	pendingCommands = new ArrayDeque<>();
+	private long				statusCount, commandCount, responseCount;
+
+	/**
+	 * Create a replay.
+	 * @param drone Drone to play the flight into.
+	 * @param bus Bus to publish snapshots to, may be null.
+	 */
+	public FlightReplay(TelloDrone drone, TelemetryBus bus)
+	{
+		this.drone = drone;
+
+		monitor = new StatusMonitor(drone, null, bus);
+	}
+
+	/**
+	 * Set the replay speed.
+	 * @param speed Factor of recorded pace, 10 plays 10 times faster,
+	 * AS_FAST_AS_POSSIBLE (0) does not wait between packets.
+	 */
+	public void setSpeed(double speed)
+	{
+		if (speed < 0 || Double.isNaN(speed)) throw new IllegalArgumentException("speed must be positive");
+
+		this.speed = speed;
+	}
+
+	/**
+	 * Stop a replay in progress. replay() returns after the current packet.
+	 */
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Play a recorded flight on the calling thread. Returns when all packets
+	 * are played, the status monitor stops on a crash detection or stop() is
+	 * called.
+	 * @param path A segment file or a folder holding the segment files of one flight.
+	 * @return Number of status packets played.
+	 * @throws IOException If a file can't be read.
+	 */
+	public long replay(Path path) throws IOException
+	{
+		List<Path> files = new ArrayList<>();
+
+		if (Files.isDirectory(path))
+		{
+			try (DirectoryStream<Path> directory = Files.newDirectoryStream(path, "*.tlog"))
+			{
+				for (Path file : directory) files.add(file);
+			}
+
+			// Segment names sort in recording order.
+			Collections.sort(files);
+		}
+		else
+			files.add(path);
+
+		stopped = false;
+		statusCount = commandCount = responseCount = 0;
+		pendingCommands.clear();
+
+		drone.setConnection(TelloConnection.CONNECTED);
+		drone.setFlying(false);
+
+		monitor.start();
+
+		long firstTime = 0, wallStart = 0, timeOffset = 0;
+		boolean first = true;
+
+		try
+		{
+			for (Path file : files)
+			{
+				logger.fine("replaying " + file);
+
+				try (FlightLogReader reader = new FlightLogReader(file))
+				{
+					while (!stopped && monitor.isRunning() && reader.next())
+					{
+						long time = reader.getTime();
+
+						if (first)
+						{
+							first = false;
+							firstTime = time;
+							wallStart = System.nanoTime();
+							timeOffset = wallStart - firstTime;
+						}
+
+						double factor = speed;
+
+						if (factor > 0) pace(wallStart + (long) ((time - firstTime) / factor));
+
+						play(reader.getType(), reader.getData(), time + timeOffset);
+					}
+				}
+
+				if (stopped || !monitor.isRunning()) break;
+			}
+		}
+		finally
+		{
+			monitor.stop();
+		}
+
+		logger.fine(String.format("replay done, %d status, %d commands, %d responses",
+				statusCount, commandCount, responseCount));
+
+		return statusCount;
+	}
+
+	/**
+	 * Number of status packets played by the last replay.
+	 * @return Status packet count.
+	 */
+	public long getStatusCount()
+	{
+		return statusCount;
+	}
+
+	/**
+	 * Number of commands played by the last replay.
+	 * @return Command count.
+	 */
+	public long getCommandCount()
+	{
+		return commandCount;
+	}
+
+	/**
+	 * Number of responses played by the last replay.
+	 * @return Response count.
+	 */
+	public long getResponseCount()
+	{
+		return responseCount;
+	}
+
+	private void play(byte type, ByteBuffer data, long receiveTime)
+	{
+		switch (type)
+		{
+			case FlightRecorder.STATUS:
+				statusCount++;
+				monitor.statusReceived(data, receiveTime);
+				break;
+
+			case FlightRecorder.COMMAND:
+				commandCount++;
+				String command = StandardCharsets.UTF_8.decode(data).toString().trim();
+				// rc commands get no response.
+				if (!command.startsWith(TelloCommandValues.RC + " ")) pendingCommands.add(command);
+				break;
+
+			case FlightRecorder.RESPONSE:
+				responseCount++;
+				commandCompleted(pendingCommands.poll(), StandardCharsets.UTF_8.decode(data).toString().trim());
+				break;
+		}
+	}
+
+	// Apply the effect of a successful command on the drone state as
+	// TelloControl does.
+	private void commandCompleted(String command, String response)
+	{
+		if (command == null || !response.equalsIgnoreCase("ok")) return;
+
+		if (command.equals(TelloCommandValues.TAKE_OFF))
+			drone.setFlying(true);
+		else if (command.equals(TelloCommandValues.LAND) || command.equals(TelloCommandValues.EMERGENCY))
+			drone.setFlying(false);
+	}
+
+	private static void pace(long wallTime)
+	{
+		long delay;
+
+		while ((delay = wallTime - System.nanoTime()) > 0) LockSupport.parkNanos(delay);
+	}
+}
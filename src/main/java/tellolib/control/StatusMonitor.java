@@ -0,0 +1,173 @@
+package tellolib.control;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tellolib.communication.TelloCommunication;
+import tellolib.communication.TelloConnection;
+import tellolib.communication.TelloStatus;
+import tellolib.communication.TelloStatusListener;
+import tellolib.communication.TelloStatusParser;
+import tellolib.drone.TelemetryField;
+import tellolib.drone.TelemetryHistory;
+import tellolib.drone.TelemetrySnapshot;
+import tellolib.drone.TelloDrone;
+
+/**
+ * Records the status updates sent by a Tello in its TelloDrone instance.
+ * Packets are processed on the transport thread as they arrive, so a swarm
+ * of drones needs no thread per drone. A watchdog on the transport scheduler
+ * sets the drone disconnected if status updates stop arriving.
+ */
+public class StatusMonitor implements TelloStatusListener
+{
+	private final Logger				logger = Logger.getLogger("Tello");
+
+	private final TelloDrone			drone;
+	private final TelloCommunication	communication;
+	private final TelemetryBus			bus;
+
+	// Only used on the transport thread, reused for every packet.
+	private final TelloStatusParser		parser = new TelloStatusParser();
+	private final TelloStatus			status = new TelloStatus();
+
+	private ScheduledFuture<?>			watchdog;
+	private volatile long				lastReceiveTime;
+	private volatile boolean			running;
+
+	// Time height must stay at zero while flying to detect a crash.
+	private static final long			CRASH_MILLIS = 1000;
+
+	/**
+	 * Create a status monitor.
+	 * @param drone Drone to record status in.
+	 * @param communication Communication with that drone.
+	 */
+	public StatusMonitor(TelloDrone drone, TelloCommunication communication)
+	{
+		this(drone, communication, null);
+	}
+
+	/**
+	 * Create a status monitor publishing each update to a telemetry bus.
+	 * @param drone Drone to record status in.
+	 * @param communication Communication with that drone, null if packets
+	 * are fed to statusReceived() by other means such as a replay.
+	 * @param bus Bus to publish snapshots to, may be null.
+	 */
+	public StatusMonitor(TelloDrone drone, TelloCommunication communication, TelemetryBus bus)
+	{
+		this.drone = drone;
+		this.communication = communication;
+		this.bus = bus;
+	}
+
+	/**
+	 * Start receiving status packets and the watchdog.
+	 */
+	public synchronized void start()
+	{
+		logger.fine("status monitor start");
+
+		if (running) return;
+
+		running = true;
+		lastReceiveTime = System.nanoTime();
+
+		if (communication == null) return;
+
+		communication.setStatusListener(this);
+
+		ScheduledExecutorService scheduler = communication.getScheduler();
+
+		if (scheduler != null)
+			watchdog = scheduler.scheduleWithFixedDelay(this::checkStatusTimeout, 1, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop receiving status packets and the watchdog.
+	 */
+	public synchronized void stop()
+	{
+		if (!running) return;
+
+		running = false;
+
+		if (communication != null) communication.setStatusListener(null);
+
+		if (watchdog != null) watchdog.cancel(false);
+
+		watchdog = null;
+
+		logger.fine("status monitor ended");
+	}
+
+	/**
+	 * Returns monitor state.
+	 * @return True if monitor is running, false if not.
+	 */
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	@Override
+	public void statusReceived( ByteBuffer data, long receiveTime )
+	{
+		if (!running) return;
+
+		lastReceiveTime = receiveTime;
+
+		if (logger.isLoggable(Level.FINEST))
+			logger.finest(StandardCharsets.UTF_8.decode(data.duplicate()).toString());
+
+		if (!parser.parse(data, status))
+		{
+			logger.warning("status packet malformed");
+			return;
+		}
+
+		// Record status information in Drone class as one snapshot.
+
+		TelemetrySnapshot telemetry = drone.publishTelemetry(status, receiveTime);
+
+		TelemetryHistory history = drone.getHistory();
+
+		history.record(telemetry);
+
+		if (bus != null) bus.publish(telemetry);
+
+		// If we are flying and height goes to zero and status is still coming
+		// it probably means drone has crashed. This condition must persist
+		// for more than 1 second to avoid spurious height == 0 reports.
+
+		// The history must also hold samples older than the window, so the
+		// condition is known to have lasted the whole window.
+
+		if (drone.isFlying() && telemetry.getHeight() <= 0 &&
+			history.max(TelemetryField.HEIGHT, CRASH_MILLIS) <= 0 && history.size() > history.count(CRASH_MILLIS))
+			fail("crash detected");
+	}
+
+	// Runs on the scheduler. Loss of status updates most likely means
+	// the drone has shut down.
+	private void checkStatusTimeout()
+	{
+		if (System.nanoTime() - lastReceiveTime > TimeUnit.MILLISECONDS.toNanos(communication.getTimeout()))
+			fail("Receive timed out");
+	}
+
+	private void fail( String reason )
+	{
+		logger.severe("status monitor failed: " + reason);
+		// Error on status monitor most likely means drone has shut down.
+		drone.setConnection(TelloConnection.DISCONNECTED);
+
+		stop();
+	}
+}
@@ -0,0 +1,194 @@
+package tellolib.control;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import tellolib.drone.TelemetryField;
+import tellolib.drone.TelemetrySnapshot;
+
+/**
+ * Delivers telemetry snapshots from the status monitor to subscribers.
+ * Instead of polling TelloDrone getters in a loop, register a condition such
+ * as {@code t -> t.getMissionPadId() > 0} and a listener to be called when it
+ * becomes true.
+ * <p>
+ * For each packet the status monitor evaluates every subscriber's condition
+ * once and queues a delivery for those that match. Listeners run on a small
+ * bounded executor, never on the thread receiving packets. A slow listener
+ * only delays itself: while it runs, newer snapshots replace the one waiting
+ * for it.
+ */
+public class TelemetryBus
+{
+	private static Executor		sharedExecutor;
+
+	private final Executor		executor;
+	private final CopyOnWriteArrayList<TelemetrySubscription>	subscriptions = new CopyOnWriteArrayList<>();
+	private final AtomicLong	rejected = new AtomicLong();
+
+	/**
+	 * Create a bus delivering on the executor shared by all buses, two
+	 * daemon threads with a bounded queue.
+	 */
+	public TelemetryBus()
+	{
+		this(defaultExecutor());
+	}
+
+	/**
+	 * Create a bus delivering on the given executor.
+	 * @param executor Executor to run listeners on.
+	 */
+	public TelemetryBus( Executor executor )
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Call the listener with every snapshot.
+	 * @param listener Listener to call.
+	 * @return The subscription.
+	 */
+	public TelemetrySubscription subscribe( Consumer<TelemetrySnapshot> listener )
+	{
+		return add(new TelemetrySubscription(this, null, false, listener));
+	}
+
+	/**
+	 * Call the listener each time the condition becomes true, for instance
+	 * {@code t -> t.getBattery() < 20}. Called once when the condition becomes
+	 * true, again only after it has been false.
+	 * @param condition Condition tested for each snapshot.
+	 * @param listener Listener to call.
+	 * @return The subscription.
+	 */
+	public TelemetrySubscription subscribe( Predicate<TelemetrySnapshot> condition, Consumer<TelemetrySnapshot> listener )
+	{
+		return add(new TelemetrySubscription(this, condition, true, listener));
+	}
+
+	/**
+	 * Call the listener with every snapshot for which the condition is true.
+	 * @param condition Condition tested for each snapshot.
+	 * @param listener Listener to call.
+	 * @return The subscription.
+	 */
+	public TelemetrySubscription subscribeWhile( Predicate<TelemetrySnapshot> condition, Consumer<TelemetrySnapshot> listener )
+	{
+		return add(new TelemetrySubscription(this, condition, false, listener));
+	}
+
+	/**
+	 * Call the listener when a field changes value.
+	 * @param field The field to watch.
+	 * @param listener Listener to call.
+	 * @return The subscription.
+	 */
+	public TelemetrySubscription subscribeChange( TelemetryField field, Consumer<TelemetrySnapshot> listener )
+	{
+		double[] last = {Double.NaN};
+
+		// Condition runs on the publishing thread only, so last needs no locking.
+		return add(new TelemetrySubscription(this, t ->
+		{
+			double value = field.valueOf(t);
+			boolean changed = value != last[0];
+			last[0] = value;
+			return changed;
+		}, false, listener));
+	}
+
+	/**
+	 * Call the listener when a field goes below a threshold.
+	 * @param field The field to watch.
+	 * @param threshold The threshold.
+	 * @param listener Listener to call.
+	 * @return The subscription.
+	 */
+	public TelemetrySubscription subscribeBelow( TelemetryField field, double threshold, Consumer<TelemetrySnapshot> listener )
+	{
+		return subscribe(t -> field.valueOf(t) < threshold, listener);
+	}
+
+	/**
+	 * Call the listener when a field goes above a threshold.
+	 * @param field The field to watch.
+	 * @param threshold The threshold.
+	 * @param listener Listener to call.
+	 * @return The subscription.
+	 */
+	public TelemetrySubscription subscribeAbove( TelemetryField field, double threshold, Consumer<TelemetrySnapshot> listener )
+	{
+		return subscribe(t -> field.valueOf(t) > threshold, listener);
+	}
+
+	/**
+	 * Number of deliveries the executor refused because its queue was full.
+	 * @return Rejected count.
+	 */
+	public long getRejected()
+	{
+		return rejected.get();
+	}
+
+	/**
+	 * Deliver a snapshot to the subscribers. Called by the status monitor for
+	 * each packet, does not wait for listeners.
+	 * @param telemetry The snapshot.
+	 */
+	public void publish( TelemetrySnapshot telemetry )
+	{
+		for (TelemetrySubscription subscription : subscriptions)
+		{
+			if (!subscription.offer(telemetry)) continue;
+
+			try
+			{
+				executor.execute(subscription::drain);
+			}
+			catch (RejectedExecutionException e)
+			{
+				rejected.incrementAndGet();
+				subscription.unschedule();
+			}
+		}
+	}
+
+	void remove( TelemetrySubscription subscription )
+	{
+		subscriptions.remove(subscription);
+	}
+
+	private TelemetrySubscription add( TelemetrySubscription subscription )
+	{
+		subscriptions.add(subscription);
+
+		return subscription;
+	}
+
+	private static synchronized Executor defaultExecutor()
+	{
+		if (sharedExecutor == null)
+		{
+			AtomicInteger threads = new AtomicInteger();
+
+			sharedExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024),
+					runnable ->
+					{
+						Thread thread = new Thread(runnable, "TelemetryBus-" + threads.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+
+		return sharedExecutor;
+	}
+}
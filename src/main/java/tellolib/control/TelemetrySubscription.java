@@ -0,0 +1,143 @@
+package tellolib.control;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+import tellolib.drone.TelemetrySnapshot;
+import tellolib.metrics.LatencyHistogram;
+
+/**
+ * A subscriber registered with a {@link TelemetryBus}. Holds at most one
+ * undelivered snapshot: if the subscriber falls behind, older snapshots are
+ * replaced by newer ones and counted as skipped.
+ */
+public class TelemetrySubscription
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	private final TelemetryBus							bus;
+	private final Predicate<TelemetrySnapshot>			condition;
+	private final Consumer<TelemetrySnapshot>			listener;
+	private final boolean								edgeTriggered;
+
+	private final AtomicReference<TelemetrySnapshot>	pending = new AtomicReference<>();
+	private final AtomicBoolean							scheduled = new AtomicBoolean();
+	private final AtomicLong							delivered = new AtomicLong(), skipped = new AtomicLong();
+	private final LatencyHistogram						lag = new LatencyHistogram("subscriber lag");
+
+	private volatile boolean	cancelled;
+
+	// Only used on the thread publishing to the bus.
+	private boolean				matched;
+
+	TelemetrySubscription( TelemetryBus bus, Predicate<TelemetrySnapshot> condition, boolean edgeTriggered,
+						   Consumer<TelemetrySnapshot> listener )
+	{
+		this.bus = bus;
+		this.condition = condition;
+		this.edgeTriggered = edgeTriggered;
+		this.listener = listener;
+	}
+
+	/**
+	 * Stop delivery to this subscriber.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+
+		bus.remove(this);
+	}
+
+	/**
+	 * Returns subscription state.
+	 * @return True if cancelled.
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Number of snapshots delivered to the subscriber.
+	 * @return Delivered count.
+	 */
+	public long getDelivered()
+	{
+		return delivered.get();
+	}
+
+	/**
+	 * Number of snapshots replaced by newer ones before the subscriber got them.
+	 * @return Skipped count.
+	 */
+	public long getSkipped()
+	{
+		return skipped.get();
+	}
+
+	/**
+	 * Time from packet receipt to delivery to the subscriber.
+	 * @return Lag histogram.
+	 */
+	public LatencyHistogram getLag()
+	{
+		return lag;
+	}
+
+	// Called on the publishing thread for each packet. Returns true if the
+	// subscriber needs a delivery scheduled.
+	boolean offer( TelemetrySnapshot telemetry )
+	{
+		if (cancelled) return false;
+
+		boolean matches = condition == null || condition.test(telemetry);
+		boolean fire = matches && (!edgeTriggered || !matched);
+
+		matched = matches;
+
+		if (!fire) return false;
+
+		if (pending.getAndSet(telemetry) != null) skipped.incrementAndGet();
+
+		return scheduled.compareAndSet(false, true);
+	}
+
+	// Delivery could not be scheduled, allow the next packet to try again.
+	void unschedule()
+	{
+		scheduled.set(false);
+	}
+
+	// Runs on the bus executor. Delivers the pending snapshot, and any that
+	// arrives while delivering, then releases the subscriber.
+	void drain()
+	{
+		TelemetrySnapshot telemetry;
+
+		do
+		{
+			while ((telemetry = pending.getAndSet(null)) != null)
+			{
+				if (cancelled) return;
+
+				lag.recordSince(telemetry.getReceiveTime());
+
+				try
+				{
+					listener.accept(telemetry);
+				}
+				catch (Exception e) { logger.warning("telemetry subscriber failed: " + e.toString()); }
+
+				delivered.incrementAndGet();
+			}
+
+			scheduled.set(false);
+
+		} while (pending.get() != null && scheduled.compareAndSet(false, true));
+	}
+}
@@ -2,16 +2,27 @@ package tellolib.control;
 
 import tellolib.camera.MissionDetectionCamera;
 import tellolib.camera.TelloCamera;
-import tellolib.command.BasicTelloCommand;
 import tellolib.command.ComplexTelloCommand;
+import tellolib.command.EncodedCommand;
 import tellolib.command.TelloCommandInterface;
 import tellolib.command.TelloCommandValues;
 import tellolib.command.TelloFlip;
+import tellolib.communication.FlightRecorder;
 import tellolib.communication.TelloCommunication;
 import tellolib.communication.TelloConnection;
+import tellolib.drone.TelemetrySnapshot;
 import tellolib.drone.TelloDrone;
 import tellolib.drone.TelloModel;
+import tellolib.exception.TelloConnectionException;
 
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,34 +31,65 @@ import java.util.logging.Logger;
  * TelloControl interface. Provides high level wrappers for
  * library classes used to send commands to the drone.
  */
-public class TelloControl implements TelloControlInterface 
+public class TelloControl implements TelloControlInterface, TelloControlAsyncInterface
 {
 	private final 	Logger			logger = Logger.getLogger("Tello");
 	private final 	ConsoleHandler 	handler = new ConsoleHandler();
 	
+	/**
+	 * Default oldest telemetry returned by the getters, 300 ms or three status
+	 * packets.
+	 */
+	public static final long	DEFAULT_TELEMETRY_MAX_AGE = 300;
+	
 	private TelloDrone			drone;
 	
 	private TelloCommunication 	communication;
 	
 	private TelloCamera			camera;
 	
-	private Thread				statusMonitorThread, keepAliveThread;
+	private StatusMonitor		statusMonitor;
+	
+	private final TelemetryBus	telemetryBus = new TelemetryBus();
+	
+	private FlightRecorder		flightRecorder;
+	
+	private volatile KeepAlive	keepAlive;
+	
+	// Longest time without traffic before a keepalive is sent. The drone
+	// lands if it gets no command for 15 seconds.
+	private static final long	KEEPALIVE_IDLE = TimeUnit.SECONDS.toNanos(10);
+	
+	// Oldest telemetry the getters may return instead of querying the drone.
+	private volatile long		telemetryMaxAge = DEFAULT_TELEMETRY_MAX_AGE;
 	
 	// Private constructor, holder class and getInstance() implement this
 	// class as a singleton.
 	
 	private TelloControl() 
 	{
+		this(TelloDrone.getInstance(), TelloCommunication.getInstance(), TelloCamera.getInstance());
+		
 		logger.setLevel(Level.OFF);
 		handler.setLevel(Level.OFF);
 		logger.addHandler(handler);
 		logger.setUseParentHandlers(false);
+	}
+	
+	/**
+	 * Create a TelloControl for one drone of a swarm. Single drone
+	 * programs should use getInstance().
+	 * @param drone Drone state for this drone.
+	 * @param communication Communication with this drone.
+	 * @param camera Camera for this drone or null if video is not used.
+	 */
+	public TelloControl(TelloDrone drone, TelloCommunication communication, TelloCamera camera)
+	{
+		this.drone = drone;
 		  
-		drone = TelloDrone.getInstance();
-		  
-		communication = TelloCommunication.getInstance();
+		this.communication = communication;
 		
-		camera = TelloCamera.getInstance();
+		this.camera = camera;
 	}
     
 	private static class SingletonHolder 
@@ -83,7 +125,8 @@ public class TelloControl implements TelloControlInterface
 	{
 		stopStatusMonitor();
 		stopKeepAlive();
-		camera.stopVideoCapture();
+		stopFlightRecorder();
+		if (camera != null) camera.stopVideoCapture();
 		  
 		// This will land if we are still flying.
 
@@ -101,7 +144,7 @@ public class TelloControl implements TelloControlInterface
 	@Override
 	public void enterCommandMode() 
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.COMMAND_MODE);
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.COMMAND_MODE);
 		communication.executeCommand(command);
 		
 		// Determine drone model. This method call will fail if not a Tello EDU and SDk 1.3.
@@ -116,195 +159,399 @@ public class TelloControl implements TelloControlInterface
 	@Override
 	public void takeOff() 
 	{
-		try
-		{
-			TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.TAKE_OFF);
-			communication.executeCommand(command);
-			drone.setFlying(true);
-		}
-		catch (Exception e) { throw e; }
+		TelloCommunication.await(takeOffAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Void> takeOffAsync() 
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.TAKE_OFF);
+		return communication.executeCommandAsync(command).thenRun(() -> drone.setFlying(true));
 	}
 	
 	@Override
 	public void land() 
+	{
+		TelloCommunication.await(landAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Void> landAsync() 
 	{
 		// We do this first so the crash detection code in status monitor will not think
 		// we have crashed when height goes to zero.
 	  	drone.setFlying(false);
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.LAND);
-	  	communication.executeCommand(command);
+	  	communication.getRcChannel().reset();
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.LAND);
+	  	return communication.executePriorityCommandAsync(command);
 	}
 	
 	@Override
 	public void doFlip(TelloFlip telloFlip) 
+	{
+		TelloCommunication.await(doFlipAsync(telloFlip));
+	}
+	
+	@Override
+	public CompletableFuture<Void> doFlipAsync(TelloFlip telloFlip)
 	{
 		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.FLIP, TelloFlip.toCommand(telloFlip));
-		communication.executeCommand(command);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void setSpeed(Integer speed) 
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.SPEED, speed.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(setSpeedAsync(speed));
+	}
+	
+	@Override
+	public CompletableFuture<Void> setSpeedAsync(Integer speed)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.SPEED, speed);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void forward(Integer distance) 
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.FORWARD, distance.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(forwardAsync(distance));
+	}
+	
+	@Override
+	public CompletableFuture<Void> forwardAsync(Integer distance)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.FORWARD, distance);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void backward(Integer distance)
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.BACK, distance.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(backwardAsync(distance));
+	}
+	
+	@Override
+	public CompletableFuture<Void> backwardAsync(Integer distance)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.BACK, distance);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void right(Integer distance) 
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.RIGHT, distance.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(rightAsync(distance));
+	}
+	
+	@Override
+	public CompletableFuture<Void> rightAsync(Integer distance)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.RIGHT, distance);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void left(Integer distance) 
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.LEFT, distance.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(leftAsync(distance));
+	}
+	
+	@Override
+	public CompletableFuture<Void> leftAsync(Integer distance)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.LEFT, distance);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void rotateRight(Integer angle) 
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.CW, angle.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(rotateRightAsync(angle));
+	}
+	
+	@Override
+	public CompletableFuture<Void> rotateRightAsync(Integer angle)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CW, angle);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void rotateLeft(Integer angle)
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.CCW, angle.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(rotateLeftAsync(angle));
+	}
+	
+	@Override
+	public CompletableFuture<Void> rotateLeftAsync(Integer angle)
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CCW, angle);
+		return communication.executeCommandAsync(command);
 	}
 	  
-	public int getBattery() 
+	@Override
+	public int getBattery()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_BATTERY);
-		String battery = communication.executeReadCommand(command);
-		drone.setBattery(Integer.parseInt(battery.trim()));
-		return drone.getBattery();
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return t.getBattery();
+
+		return TelloCommunication.await(getBatteryAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Integer> getBatteryAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(t.getBattery());
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_BATTERY);
+		return communication.executeReadCommandAsync(command).thenApply(battery ->
+		{
+			drone.setBattery(Integer.parseInt(battery.trim()));
+			return drone.getBattery();
+		});
 	}
 	  
+	@Override
 	public int getSpeed() 
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_SPEED);
-		String speed = communication.executeReadCommand(command);
-		drone.setSpeed((int) Double.parseDouble(speed.trim()));
-		return drone.getSpeed();
+		return TelloCommunication.await(getSpeedAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Integer> getSpeedAsync()
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_SPEED);
+		return communication.executeReadCommandAsync(command).thenApply(speed ->
+		{
+			drone.setSpeed((int) Double.parseDouble(speed.trim()));
+			return drone.getSpeed();
+		});
 	}
 
 	@Override
 	public void up( Integer distance )
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.UP, distance.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(upAsync(distance));
+	}
+	
+	@Override
+	public CompletableFuture<Void> upAsync( Integer distance )
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.UP, distance);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public void down( Integer distance )
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.DOWN, distance.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(downAsync(distance));
+	}
+	
+	@Override
+	public CompletableFuture<Void> downAsync( Integer distance )
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.DOWN, distance);
+		return communication.executeCommandAsync(command);
 	}
 	
 	@Override
 	public int getTime()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_FLY_TIME);
-		String time = communication.executeReadCommand(command);
-		drone.setTime(Integer.parseInt(time.trim().replaceAll("[^\\d.-]", "")));
-		return drone.getTime();
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return t.getTime();
+
+		return TelloCommunication.await(getTimeAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Integer> getTimeAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(t.getTime());
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_FLY_TIME);
+		return communication.executeReadCommandAsync(command).thenApply(time ->
+		{
+			drone.setTime(Integer.parseInt(time.trim().replaceAll("[^\\d.-]", "")));
+			return drone.getTime();
+		});
 	}
 	
 	@Override
 	public int getHeight()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_HEIGHT);
-		String height = communication.executeReadCommand(command);
-		drone.setHeight(Integer.parseInt(height.trim().replaceAll("[^\\d.-]", "")) * 10);
-		return drone.getHeight();
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return t.getHeight();
+
+		return TelloCommunication.await(getHeightAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Integer> getHeightAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(t.getHeight());
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_HEIGHT);
+		return communication.executeReadCommandAsync(command).thenApply(height ->
+		{
+			drone.setHeight(Integer.parseInt(height.trim().replaceAll("[^\\d.-]", "")) * 10);
+			return drone.getHeight();
+		});
 	}
 	
 	@Override
 	public int getTemp()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_TEMPERATURE);
-		String temp = communication.executeReadCommand(command);
-		drone.setTemp(Integer.parseInt(temp.trim().split("~")[0].replaceAll("[^\\d.-]", "")));
-		return drone.getTemp();
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return t.getTempLow();
+
+		return TelloCommunication.await(getTempAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Integer> getTempAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(t.getTempLow());
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_TEMPERATURE);
+		return communication.executeReadCommandAsync(command).thenApply(temp ->
+		{
+			drone.setTemp(Integer.parseInt(temp.trim().split("~")[0].replaceAll("[^\\d.-]", "")));
+			return drone.getTemp();
+		});
 	}
 	
 	@Override
 	public double getBarometer()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_BAROMETER);
-		String barometer = communication.executeReadCommand(command);
-		drone.setBarometer(Double.parseDouble(barometer.trim()));
-		return drone.getBarometer();
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return t.getBarometer();
+
+		return TelloCommunication.await(getBarometerAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Double> getBarometerAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(t.getBarometer());
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_BAROMETER);
+		return communication.executeReadCommandAsync(command).thenApply(barometer ->
+		{
+			drone.setBarometer(Double.parseDouble(barometer.trim()));
+			return drone.getBarometer();
+		});
 	}
 	
 	@Override
 	public int[] getAttitude()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_ATTITUDE);
-		String attitude = communication.executeReadCommand(command);
-		
-		String spry[] = attitude.split(";");
-		int pry[] = new int[3];
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return new int[] {t.getPitch(), t.getRoll(), t.getYaw()};
 
-		for (int i = 0; i < 3; i++)
+		return TelloCommunication.await(getAttitudeAsync());
+	}
+	
+	@Override
+	public CompletableFuture<int[]> getAttitudeAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(new int[] {t.getPitch(), t.getRoll(), t.getYaw()});
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_ATTITUDE);
+		return communication.executeReadCommandAsync(command).thenApply(attitude ->
 		{
-			String axis[] = spry[i].split(":");
-			pry[i] = Integer.parseInt(axis[1]);
-			//logger.info(Integer.toString(pry[i]));
- 		}
+			String spry[] = attitude.split(";");
+			int pry[] = new int[3];
 
-		drone.setAttitude(pry);
-		
-		return drone.getAttitude();
+			for (int i = 0; i < 3; i++)
+			{
+				String axis[] = spry[i].split(":");
+				pry[i] = Integer.parseInt(axis[1]);
+				//logger.info(Integer.toString(pry[i]));
+	 		}
+
+			drone.setAttitude(pry);
+			
+			return drone.getAttitude();
+		});
 	}
 	
 	@Override
 	public double[] getAcceleration()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_ACCELERATION);
-		String acceleration = communication.executeReadCommand(command);
-		
-		String sxyz[] = acceleration.split(";");
-		double xyz[] = new double[3];
+		TelemetrySnapshot t = freshTelemetry();
 
-		for (int i = 0; i < 3; i++)
+		if (t != null) return new double[] {t.getAccelerationX(), t.getAccelerationY(), t.getAccelerationZ()};
+
+		return TelloCommunication.await(getAccelerationAsync());
+	}
+	
+	@Override
+	public CompletableFuture<double[]> getAccelerationAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture(new double[] {t.getAccelerationX(), t.getAccelerationY(), t.getAccelerationZ()});
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_ACCELERATION);
+		return communication.executeReadCommandAsync(command).thenApply(acceleration ->
 		{
-			String axis[] = sxyz[i].split(":");
-			xyz[i] = Double.parseDouble(axis[1]);
-			//logger.info(Double.toString(xyz[i]));
- 		}
+			String sxyz[] = acceleration.split(";");
+			double xyz[] = new double[3];
+
+			for (int i = 0; i < 3; i++)
+			{
+				String axis[] = sxyz[i].split(":");
+				xyz[i] = Double.parseDouble(axis[1]);
+				//logger.info(Double.toString(xyz[i]));
+	 		}
 
-		drone.setAcceleration(xyz);
-		return drone.getAcceleration();
+			drone.setAcceleration(xyz);
+			return drone.getAcceleration();
+		});
 	}
 	
 	@Override
 	public double getTof()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.CURRENT_TOF);
-		String tof = communication.executeReadCommand(command);
-		drone.setTof(Double.parseDouble(tof.trim().replaceAll("[^\\d.-]", "")) / 10);
-		return drone.getTof();
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return t.getTof();
+
+		return TelloCommunication.await(getTofAsync());
+	}
+	
+	@Override
+	public CompletableFuture<Double> getTofAsync()
+	{
+		TelemetrySnapshot t = freshTelemetry();
+
+		if (t != null) return CompletableFuture.completedFuture((double) t.getTof());
+
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURRENT_TOF);
+		return communication.executeReadCommandAsync(command).thenApply(tof ->
+		{
+			drone.setTof(Double.parseDouble(tof.trim().replaceAll("[^\\d.-]", "")) / 10);
+			return drone.getTof();
+		});
 	}
 
 	@Override
@@ -316,7 +563,7 @@ public class TelloControl implements TelloControlInterface
 			return "";
 		}
 		
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.SN);
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.SN);
 		String sn = communication.executeReadCommand(command);
 		drone.setSN(sn.trim());
 		return drone.getSN();
@@ -325,17 +572,26 @@ public class TelloControl implements TelloControlInterface
 	@Override
 	public void goTo( Integer x, Integer y, Integer z, Integer speed )
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.GO, 
-				x.toString() + " " + y.toString() + " " + z.toString() + " " + speed.toString());
-		communication.executeCommand(command);
+		TelloCommunication.await(goToAsync(x, y, z, speed));
+	}
+	
+	@Override
+	public CompletableFuture<Void> goToAsync( Integer x, Integer y, Integer z, Integer speed )
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.GO + " " + x + " " + y + " " + z + " " + speed);
+		return communication.executeCommandAsync(command);
 	}
 
 	@Override
 	public void flyRC( Integer lr, Integer fb, Integer ud, Integer yaw )
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.RC, 
-				lr.toString() + " " + fb.toString() + " " + ud.toString() + " " + yaw.toString());
-		communication.executeCommandNoWait(command);
+		communication.getRcChannel().set(lr, fb, ud, yaw);
+	}
+
+	@Override
+	public void setFlyRCRate( int rate )
+	{
+		communication.getRcChannel().setRate(rate);
 	}
 
 	@Override
@@ -347,7 +603,7 @@ public class TelloControl implements TelloControlInterface
 			return "";
 		}
 		
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.SDK);
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.SDK);
 		String sdk = communication.executeReadCommand(command);
 		drone.setSDK(sdk.trim());
 		return drone.getSDK();
@@ -356,231 +612,281 @@ public class TelloControl implements TelloControlInterface
 	@Override
 	public void stop()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.STOP);
-		communication.executeCommand(command);
+		// A move in flight may take the "ok" meant for stop, leaving stop to
+		// wait for the move's response, so don't wait for the response.
+		stopAsync().whenComplete((r, e) ->
+		{
+			if (e != null) logger.warning("stop failed: " + e.toString());
+		});
+	}
+	
+	@Override
+	public CompletableFuture<Void> stopAsync()
+	{
+		communication.getRcChannel().reset();
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.STOP);
+		return communication.executePriorityCommandAsync(command);
 	}
 
 	@Override
 	public void emergency()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.EMERGENCY);
-		communication.executeCommand(command);
+		communication.getRcChannel().reset();
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.EMERGENCY);
+		// Motors are stopped when the command arrives, don't wait for the response.
+		communication.executePriorityCommandAsync(command).whenComplete((r, e) ->
+		{
+			if (e != null) logger.warning("emergency failed: " + e.toString());
+		});
+		drone.setFlying(false);
 	}
 
 	@Override
 	public void streamOn()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.ENABLE_VIDEO_STREAM);
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.ENABLE_VIDEO_STREAM);
 		communication.executeCommand(command);
 	}
 
 	@Override
 	public void streamOff()
 	{
-		TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.DISABLE_VIDEO_STREAM);
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.DISABLE_VIDEO_STREAM);
 		communication.executeCommand(command);
 	}
 
 	@Override
 	public void startStatusMonitor()
 	{
-		logger.fine("starting status monitor thread");
+		logger.fine("starting status monitor");
 		
-		if (statusMonitorThread != null) return;
+		if (statusMonitor != null && statusMonitor.isRunning()) return;
 
-		statusMonitorThread = new StatusMonitor();
-		statusMonitorThread.start();
+		statusMonitor = new StatusMonitor(drone, communication, telemetryBus);
+		statusMonitor.start();
+	}
+
+	@Override
+	public TelemetryBus getTelemetryBus()
+	{
+		return telemetryBus;
+	}
+
+	@Override
+	public synchronized boolean startFlightRecorder(String folder)
+	{
+		stopFlightRecorder();
+		
+		try
+		{
+			flightRecorder = new FlightRecorder(Paths.get(folder));
+		}
+		catch (Exception e)
+		{
+			logger.warning("flight recorder start failed: " + e.toString());
+			return false;
+		}
+		
+		communication.setFlightRecorder(flightRecorder);
+		
+		logger.fine("flight recorder started");
+		
+		return true;
+	}
+
+	@Override
+	public synchronized void stopFlightRecorder()
+	{
+		if (flightRecorder == null) return;
+		
+		communication.setFlightRecorder(null);
+		
+		// A packet already being recorded completes before close.
+		flightRecorder.close();
+		
+		logger.fine(String.format("flight recorder stopped, %d recorded, %d dropped",
+				flightRecorder.getRecorded(), flightRecorder.getDropped()));
+		
+		flightRecorder = null;
 	}
 
 	@Override
 	public void stopStatusMonitor()
 	{
-		if (statusMonitorThread != null)
+		if (statusMonitor != null)
 		{
-			logger.fine("stopping status monitor thread");
+			logger.fine("stopping status monitor");
 			
-			try
-			{
-				// Signal thread to stop.
-				statusMonitorThread.interrupt();
-				// Wait for thread to stop.
-				statusMonitorThread.join();
-			} catch (Exception e) {e.printStackTrace();}
+			statusMonitor.stop();
 		}
 		
-		statusMonitorThread = null;
+		statusMonitor = null;
+	}
+	
+	@Override
+	public void setTelemetryMaxAge( long maxAgeMillis )
+	{
+		telemetryMaxAge = maxAgeMillis;
+	}
+	
+	@Override
+	public long getTelemetryMaxAge()
+	{
+		return telemetryMaxAge;
+	}
+	
+	// Latest telemetry if the status monitor is running and it is recent
+	// enough to answer a getter, else null to query the drone.
+	private TelemetrySnapshot freshTelemetry()
+	{
+		long maxAge = telemetryMaxAge;
+		StatusMonitor monitor = statusMonitor;
+		
+		if (maxAge <= 0 || monitor == null || !monitor.isRunning()) return null;
+		
+		TelemetrySnapshot telemetry = drone.getSnapshot();
+		
+		if (telemetry == null || telemetry.getAgeMillis() > maxAge) return null;
+		
+		// Telemetry from before the last command finished may not show its
+		// effect, such as the new height after up().
+		if (telemetry.getReceiveTime() - communication.getLastControlResponseTime() < 0) return null;
+		
+		return telemetry;
 	}
 	
-	private class StatusMonitor extends Thread
+	@Override
+	public synchronized void startKeepAlive()
 	{
-		boolean		crashDetected;
-		long		lastDetectionTime = 0;
+		if (keepAlive != null) return;
+
+		ScheduledExecutorService scheduler = communication.getScheduler();
+		
+		if (scheduler == null) throw new TelloConnectionException("No connection");
+		
+		logger.fine("starting keepalive");
 		
-		StatusMonitor()
+		keepAlive = new KeepAlive(scheduler);
+	}
+
+	@Override
+	public synchronized void stopKeepAlive()
+	{
+		if (keepAlive != null)
 		{
-			logger.fine("monitor thread constructor");
+			logger.fine(String.format("stopping keepalive, %d sent, %d suppressed", 
+									  keepAlive.sent.get(), keepAlive.suppressed.get()));
 			
-			this.setName("StatusMonitor");
-	    }
+			keepAlive.cancel();
+		}
+		
+		keepAlive = null;
+	}
+	
+	@Override
+	public long getKeepAlivesSent()
+	{
+		KeepAlive keepAlive = this.keepAlive;
 		
-	    public void run()
-	    {
-			logger.fine("status monitor thread start");
+		return keepAlive == null ? 0 : keepAlive.sent.get();
+	}
+	
+	@Override
+	public long getKeepAlivesSuppressed()
+	{
+		KeepAlive keepAlive = this.keepAlive;
+		
+		return keepAlive == null ? 0 : keepAlive.suppressed.get();
+	}
+	
+	// Checks on the transport scheduler when the drone last answered a
+	// command and sends a battery query only if it answered none for
+	// KEEPALIVE_IDLE. Each check is scheduled for when the idle time would
+	// run out, so answered commands suppress keepalives and an idle drone
+	// gets one every KEEPALIVE_IDLE. The keepalive ends itself when a ping
+	// fails or the scheduler stops, so it can be started again.
+	private class KeepAlive
+	{
+		private final ScheduledExecutorService	scheduler;
+		private volatile ScheduledFuture<?>		check;
+		private volatile boolean				cancelled;
+		
+		final AtomicLong	sent = new AtomicLong(), suppressed = new AtomicLong();
+		
+		KeepAlive(ScheduledExecutorService scheduler)
+		{
+			this.scheduler = scheduler;
 			
-	    	try
-	    	{
-	    		while (!isInterrupted())
-	    		{
-	    			String logData = communication.receiveStatusData();
-	    			
-	    			logger.finest(logData);
-	    			
-	    			String[] keyValuePairs = logData.split(";"); 
-
-	    			int[] attpry = new int[3], mpxyz = new int[3], mppry = new int[3];
-    				double[] accelxyz = new double[3], veloxyz = new double[3];
-	    			
-	    			for(String pair : keyValuePairs)                        // iterate over the pairs.
-	    			{
-	    			    String[] entry = pair.split(":");                   // split the pairs to get key and value. 
-	    			    
-	    			    switch (entry[0])
-	    			    {
-	    			    	case "bat": drone.setBattery(Integer.parseInt(entry[1].trim())); break;
-	    			    	case "time": drone.setTime(Integer.parseInt(entry[1].trim())); break;
-	    			    	case "temph": drone.setTemp(Integer.parseInt(entry[1].trim())); break;
-	    			    	case "tof": drone.setTof(Integer.parseInt(entry[1].trim())); break;
-	    			    	case "h": drone.setHeight(Integer.parseInt(entry[1].trim())); break;
-	    			    	case "baro": drone.setBarometer(Double.parseDouble(entry[1].trim())); break;
-	    			    	case "pitch": attpry[0] = Integer.parseInt(entry[1].trim()); break;
-	    			    	case "roll": attpry[1] = Integer.parseInt(entry[1].trim()); break;
-	    			    	case "yaw": attpry[2] = Integer.parseInt(entry[1].trim()); break;
-	    			    	case "agx": accelxyz[0] = Double.parseDouble(entry[1].trim()); break;
-	    			    	case "agy": accelxyz[1] = Double.parseDouble(entry[1].trim()); break;
-	    			    	case "agz": accelxyz[2] = Double.parseDouble(entry[1].trim()); break;
-	    			    	case "vgx": veloxyz[0] = Double.parseDouble(entry[1].trim()); break;
-	    			    	case "vgy": veloxyz[1] = Double.parseDouble(entry[1].trim()); break;
-	    			    	case "vgz": veloxyz[2] = Double.parseDouble(entry[1].trim()); break;
-
-	    			    	// Record mission pad id number and x,y,z values read from the pad.
-	    			    	case "mid": drone.setMissionPadId(Integer.parseInt(entry[1].trim())); break;
-	    			    	case "x": mpxyz[0] = Integer.parseInt(entry[1].trim()); break;
-	    			    	case "y": mpxyz[1] = Integer.parseInt(entry[1].trim()); break;
-	    			    	case "z": mpxyz[2] = Integer.parseInt(entry[1].trim()); break;
-	    			    	
-	    			    	case "mpry":
-	    			    		String[] entry2 = entry[1].split(",");
-	    			    		mppry[0] = Integer.parseInt(entry2[0].trim());
-	    			    		mppry[1] = Integer.parseInt(entry2[1].trim());
-	    			    		mppry[2] = Integer.parseInt(entry2[2].trim());
-	    			    		break;
-	    			    }
-	    			}
-    			    
-	    			// If we are flying and height goes to zero and status is still coming
-	    			// it probably means drone has crashed. This condition must persist 
-	    			// for more than 1 second to avoid spurious height == 0 reports.
-	    			
-	    			if (drone.isFlying() && drone.getHeight() <= 0) 
-	    			{
-	    				lastDetectionTime = System.currentTimeMillis();
-	    				crashDetected = true;
-	    			} else crashDetected = false;
-	    			
-	    			if (crashDetected && System.currentTimeMillis() - lastDetectionTime > 1000)
-	    				throw new Exception("crash detected");
-	    			
-	    			// Record status information in Drone class.
-	    			
-    			    drone.setAttitude(attpry);
-    			    
-    			    drone.setAcceleration(accelxyz);
-    			    
-    			    drone.setVelocity(veloxyz);
-    			    
-    			    drone.setMissionPadxyz(mpxyz);
-    			    
-    			    drone.setMissionPadpry(mppry);
-	    		}
-	    	}
-	    	catch (Exception e) 
-	    	{ 
-	    		logger.severe("status monitor failed: " + e.getMessage()); 
-	    		// Error on status monitor most likely means drone has shut down.
-	    		drone.setConnection(TelloConnection.DISCONNECTED);
-	    	}
-	    	finally {}
-    		
-    		logger.fine("status monitor thread ended");
-	    	
-	    	statusMonitorThread =  null;
-	    }
-	}
-	
-	@Override
-	public void startKeepAlive()
-	{
-		logger.fine("starting keepalive thread");
-		
-		if (keepAliveThread != null) return;
-
-		keepAliveThread = new KeepAlive();
-		keepAliveThread.start();
-	}
-
-	@Override
-	public void stopKeepAlive()
-	{
-		if (keepAliveThread != null)
+			schedule(KEEPALIVE_IDLE);
+		}
+		
+		void cancel()
+		{
+			cancelled = true;
+			
+			ScheduledFuture<?> check = this.check;
+			
+			if (check != null) check.cancel(false);
+		}
+		
+		private void schedule(long delayNanos)
 		{
-			logger.fine("stopping keepalive thread");
+			if (cancelled) return;
 			
 			try
 			{
-				// Signal thread to stop.
-				keepAliveThread.interrupt();
-				// Wait for thread to stop.
-				keepAliveThread.join();
-			} catch (Exception e) {e.printStackTrace();}
+				check = scheduler.schedule(this::check, delayNanos, TimeUnit.NANOSECONDS);
+			}
+			catch (RejectedExecutionException e) 
+			{ 
+				logger.fine("keepalive ended, scheduler stopped");
+				ended();
+			}
 		}
 		
-		keepAliveThread = null;
-	}
-	
-	private class KeepAlive extends Thread
-	{
-		KeepAlive()
+		// Clear the keepalive so startKeepAlive() starts a new one.
+		private void ended()
 		{
-			logger.fine("KeepAlive thread constructor");
-			
-			this.setName("KeepAlive");
-	    }
+			synchronized (TelloControl.this)
+			{
+				if (keepAlive == this) keepAlive = null;
+			}
+		}
 		
-	    public void run()
-	    {
-			logger.fine("keepalive thread start");
+		private void check()
+		{
+			long idle = System.nanoTime() - communication.getLastActivityTime();
+			
+			if (idle < KEEPALIVE_IDLE)
+			{
+				suppressed.incrementAndGet();
+				schedule(KEEPALIVE_IDLE - idle);
+				return;
+			}
+			
+			sent.incrementAndGet();
 			
-	    	try
-	    	{
-	    		while (!isInterrupted())
-	    		{
-	    			sleep(5000);	// 5 seconds.
-	    			
-	    			getBattery();
-	    		}
-	    	}
-	    	catch (InterruptedException e) {}
-	    	catch (Exception e) 
-	    	{ 
-	    		logger.severe("keepalive failed: " + e.getMessage()); 
-	    		// Error on status monitor most likely means drone has shut down.
-	    		drone.setConnection(TelloConnection.DISCONNECTED);	    		
-	    	}
-    		
-    		logger.fine("keep alive thread ended");
-	    	
-	    	keepAliveThread =  null;
-	    }
+			// Must reach the drone, telemetry would not reset its timeout.
+			communication.executeReadCommandAsync(EncodedCommand.of(TelloCommandValues.CURRENT_BATTERY)).whenComplete((r, e) ->
+			{
+				if (e == null)
+				{
+					schedule(KEEPALIVE_IDLE);
+					return;
+				}
+				
+				if (cancelled) return;
+
+				// Failed before sending, such as with no connection, the future
+				// holds the exception itself.
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				
+				logger.severe("keepalive failed: " + cause.getMessage()); 
+				ended();
+				// Error on keepalive most likely means drone has shut down.
+				drone.setConnection(TelloConnection.DISCONNECTED);
+			});
+		}
 	}
 
 	@Override
@@ -588,7 +894,7 @@ public class TelloControl implements TelloControlInterface
 	{
 		if (enabled)
 		{
-			TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.MON);
+			TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.MON);
 			communication.executeCommand(command);
 
 			command = new ComplexTelloCommand(TelloCommandValues.MDIRECTION, MissionDetectionCamera.toCommand(camera));
@@ -598,7 +904,7 @@ public class TelloControl implements TelloControlInterface
 		}
 		else
 		{
-			TelloCommandInterface command = new BasicTelloCommand(TelloCommandValues.MOFF);
+			TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.MOFF);
 			communication.executeCommand(command);
 			
 			drone.setMissionMode(false);
@@ -615,10 +921,15 @@ public class TelloControl implements TelloControlInterface
 	@Override
 	public void curve( Integer x1, Integer y1, Integer z1, Integer x2, Integer y2, Integer z2, Integer speed )
 	{
-		TelloCommandInterface command = new ComplexTelloCommand(TelloCommandValues.CURVE, 
-				x1.toString() + " " + y1.toString() + " " + z1.toString() + " " + 
-				x2.toString() + " " + y2.toString() + " " + z2.toString() + " " + speed.toString());
+		TelloCommunication.await(curveAsync(x1, y1, z1, x2, y2, z2, speed));
+	}
+	
+	@Override
+	public CompletableFuture<Void> curveAsync( Integer x1, Integer y1, Integer z1, Integer x2, Integer y2, Integer z2, Integer speed )
+	{
+		TelloCommandInterface command = EncodedCommand.of(TelloCommandValues.CURVE + " " + 
+				x1 + " " + y1 + " " + z1 + " " + x2 + " " + y2 + " " + z2 + " " + speed);
 		
-		communication.executeCommand(command);
+		return communication.executeCommandAsync(command);
 	}
 }
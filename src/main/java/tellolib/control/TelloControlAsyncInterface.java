@@ -0,0 +1,178 @@
+package tellolib.control;
+
+import java.util.concurrent.CompletableFuture;
+
+import tellolib.command.TelloFlip;
+
+/**
+ * Asynchronous mirror of {@link TelloControlInterface}. Each method sends its
+ * command and returns at once. The returned future completes when the drone
+ * responds "ok" or with the value read from the drone, or fails with the
+ * TelloCommandException or TelloConnectionException the matching synchronous
+ * method would throw. Futures are completed on the communication thread,
+ * chained stages should not block.
+ */
+public interface TelloControlAsyncInterface
+{
+  /**
+   * Taking off from the ground.
+   * @return Future completed when drone has taken off.
+   */
+  CompletableFuture<Void> takeOffAsync();
+
+  /**
+   * Landing on the ground.
+   * @return Future completed when drone has landed.
+   */
+  CompletableFuture<Void> landAsync();
+
+  /**
+   * Doing a flip in the chosen direction.
+   * @param telloFlip Type of the flip.
+   * @return Future completed when flip is done.
+   */
+  CompletableFuture<Void> doFlipAsync(TelloFlip telloFlip);
+
+  /**
+   * Set the drone's speed.
+   * @param speed Chosen speed (10-100 cm/s).
+   * @return Future completed when speed is set.
+   */
+  CompletableFuture<Void> setSpeedAsync(Integer speed);
+
+  /**
+   * Move forward.
+   * @param distance (20-500 cm).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> forwardAsync(Integer distance);
+
+  /**
+   * Move backward.
+   * @param distance (20-500 cm).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> backwardAsync(Integer distance);
+
+  /**
+   * Move right.
+   * @param distance (20-500 cm).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> rightAsync(Integer distance);
+
+  /**
+   * Move left.
+   * @param distance (20-500 cm).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> leftAsync(Integer distance);
+
+  /**
+   * Move up.
+   * @param distance (20-500 cm).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> upAsync(Integer distance);
+
+  /**
+   * Move down.
+   * @param distance (20-500 cm).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> downAsync(Integer distance);
+
+  /**
+   * rotate right.
+   * @param angle (0-3600 deg).
+   * @return Future completed when rotation is done.
+   */
+  CompletableFuture<Void> rotateRightAsync(Integer angle);
+
+  /**
+   * rotate left.
+   * @param angle (0-3600 deg).
+   * @return Future completed when rotation is done.
+   */
+  CompletableFuture<Void> rotateLeftAsync(Integer angle);
+
+  /**
+   * Fly to these offsets from current position.
+   * @param x X axis offset (-500 to 500 cm).
+   * @param y Y axis offset (-500 to 500 cm).
+   * @param z Z axis offset (-500 to 500 cm).
+   * @param speed Speed of movement (10 to 100 cm/s).
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> goToAsync(Integer x, Integer y, Integer z, Integer speed);
+
+  /**
+   * Fly at a curve starting at drone current position according to the two given offset coordinates at speed (cm/s).
+   * See {@link TelloControlInterface#curve}.
+   * @return Future completed when move is done.
+   */
+  CompletableFuture<Void> curveAsync(Integer x1, Integer y1, Integer z1, Integer x2, Integer y2, Integer z2, Integer speed);
+
+  /**
+   * Stop drone motion, goes into hover. If a move is in flight, its
+   * response and the stop response may be matched the wrong way round, so
+   * the future may only complete when the move's response arrives or times
+   * out.
+   * @return Future completed when drone is hovering.
+   */
+  CompletableFuture<Void> stopAsync();
+
+  /**
+   * Get current battery level.
+   * @return Future completed with battery level %.
+   */
+  CompletableFuture<Integer> getBatteryAsync();
+
+  /**
+   * Get current speed setting.
+   * @return Future completed with speed (1-100 cm/s).
+   */
+  CompletableFuture<Integer> getSpeedAsync();
+
+  /**
+   * Get flight time.
+   * @return Future completed with flight time in seconds.
+   */
+  CompletableFuture<Integer> getTimeAsync();
+
+  /**
+   * Get drone height.
+   * @return Future completed with height (0-3000 cm).
+   */
+  CompletableFuture<Integer> getHeightAsync();
+
+  /**
+   * Get drone temperature.
+   * @return Future completed with temperature in degrees C (0-90).
+   */
+  CompletableFuture<Integer> getTempAsync();
+
+  /**
+   * Get barometric pressure.
+   * @return Future completed with pressure in millibars.
+   */
+  CompletableFuture<Double> getBarometerAsync();
+
+  /**
+   * Get IMU attitude data.
+   * @return Future completed with pitch, roll, yaw.
+   */
+  CompletableFuture<int[]> getAttitudeAsync();
+
+  /**
+   * Get IMU acceleration.
+   * @return Future completed with angular acceleration x, y, z (.001 g).
+   */
+  CompletableFuture<double[]> getAccelerationAsync();
+
+  /**
+   * Get distance from TOF.
+   * @return Future completed with distance (30-1000 cm).
+   */
+  CompletableFuture<Double> getTofAsync();
+}
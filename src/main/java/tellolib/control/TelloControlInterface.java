@@ -48,7 +48,7 @@ public interface TelloControlInterface
   void takeOff();
 
   /**
-   * Landing on the ground.
+   * Landing on the ground. Sent ahead of commands being sent by other threads.
    */
   void land();
 
@@ -137,13 +137,37 @@ public interface TelloControlInterface
   void curve(Integer x1, Integer y1, Integer z1, Integer x2, Integer y2, Integer z2, Integer speed);
   
   /**
-   * Fly by remote control. Units are speed in cm/s.
+   * Fly by remote control. Units are speed in cm/s. Returns at once, the
+   * latest values are sent to the drone at the fly RC rate (default 20 per
+   * second) and only when they change.
    * @param lr Left/Right (-100 to 100).
    * @param fb forward/backward (-100 to 100).
    * @param ud up/down (-100 to 100).
    * @param yaw yaw value in degrees.
    */
   void flyRC(Integer lr, Integer fb, Integer ud, Integer yaw);
+  
+  /**
+   * Set how often flyRC values are sent to the drone.
+   * @param rate Sends per second (1-100).
+   */
+  void setFlyRCRate(int rate);
+
+  /**
+   * Set how old telemetry may be to answer getBattery(), getTime(), getHeight(),
+   * getTemp(), getBarometer(), getAttitude(), getAcceleration() and getTof().
+   * While the status monitor runs these return the latest status packet
+   * values if no older than this, instead of querying the drone and waiting
+   * for the reply. Older telemetry, or no status monitor, queries the drone.
+   * @param maxAgeMillis Oldest telemetry to use in milliseconds, 0 to always query the drone.
+   */
+  void setTelemetryMaxAge(long maxAgeMillis);
+
+  /**
+   * Returns how old telemetry may be to answer the getters.
+   * @return Milliseconds, 0 if the getters always query the drone.
+   */
+  long getTelemetryMaxAge();
 
   /**
    * Get current battery level.
@@ -220,12 +244,14 @@ public interface TelloControlInterface
   String getSDK();
   
   /**
-   * Stop drone motion, goes into hover.
+   * Stop drone motion, goes into hover. Sent ahead of commands being sent
+   * by other threads, returns without waiting for the drone to respond.
    */
   void stop();
   
   /**
-   * Stop all motors.
+   * Stop all motors. Sent ahead of commands being sent by other threads,
+   * returns without waiting for the drone to respond.
    */
   void emergency();
   
@@ -256,20 +282,56 @@ public interface TelloControlInterface
   void stopStatusMonitor();
   
   /**
-   * Start keep alive thread that pings the Tello every 10 seconds
-   * with a get battery level command to keep the Tello from shutting
-   * down automatically if it receives no commands for 15 seconds.
-   * Thread will set drone connection state to disconnected if 
+   * Get the bus delivering status updates to subscribers while the
+   * status monitor is running. Subscribe to be called when a condition
+   * becomes true instead of polling TelloDrone in a loop.
+   * @return The telemetry bus.
+   */
+  TelemetryBus getTelemetryBus();
+  
+  /**
+   * Start recording all status packets, commands and responses exchanged
+   * with the Tello to binary log files for examination after the flight.
+   * Recording is stopped when {@link #disconnect()} is called.
+   * @param folder Folder to write log files in.
+   * @return True if recording started, false if log file could not be created.
+   */
+  boolean startFlightRecorder(String folder);
+  
+  /**
+   * Stop recording the traffic with the Tello.
+   */
+  void stopFlightRecorder();
+  
+  /**
+   * Start keep alive that pings the Tello with a get battery level
+   * command to keep the Tello from shutting down automatically if it
+   * receives no commands for 15 seconds. A ping is only sent when the
+   * drone answered no other command for 10 seconds.
+   * Keep alive will set drone connection state to disconnected if 
    * it detects an error on ping of drone.
    */
   void startKeepAlive();
   
   /**
-   * Stops the keep alive thread. Thread will also be stopped when {@link #disconnect()}
+   * Stops the keep alive. Keep alive will also be stopped when {@link #disconnect()}
    * is called.
    */
   void stopKeepAlive();
   
+  /**
+   * Number of keep alive pings sent since keep alive was started.
+   * @return Sent count.
+   */
+  long getKeepAlivesSent();
+  
+  /**
+   * Number of keep alive pings not needed because other traffic kept
+   * the drone awake.
+   * @return Suppressed count.
+   */
+  long getKeepAlivesSuppressed();
+  
   /**
    * Set mission mode state. In mission mode, status monitoring
    * will record information about any mission pad detected by the
@@ -0,0 +1,56 @@
+package tellolib.drone;
+
+/**
+ * Enum describing the status values kept in {@link TelemetryHistory}.
+ */
+public enum TelemetryField
+{
+	BATTERY,
+	HEIGHT,
+	TOF,
+	BAROMETER,
+	PITCH,
+	ROLL,
+	YAW,
+	VELOCITY_X,
+	VELOCITY_Y,
+	VELOCITY_Z,
+	ACCELERATION_X,
+	ACCELERATION_Y,
+	ACCELERATION_Z,
+	MISSION_PAD_ID,
+	MISSION_PAD_X,
+	MISSION_PAD_Y,
+	MISSION_PAD_Z;
+	
+	/**
+	 * Get this field's value from a snapshot.
+	 * @param telemetry The snapshot.
+	 * @return The value.
+	 */
+	public double valueOf(TelemetrySnapshot telemetry)
+	{
+		switch (this)
+		{
+			case BATTERY: return telemetry.getBattery();
+			case HEIGHT: return telemetry.getHeight();
+			case TOF: return telemetry.getTof();
+			case BAROMETER: return telemetry.getBarometer();
+			case PITCH: return telemetry.getPitch();
+			case ROLL: return telemetry.getRoll();
+			case YAW: return telemetry.getYaw();
+			case VELOCITY_X: return telemetry.getVelocityX();
+			case VELOCITY_Y: return telemetry.getVelocityY();
+			case VELOCITY_Z: return telemetry.getVelocityZ();
+			case ACCELERATION_X: return telemetry.getAccelerationX();
+			case ACCELERATION_Y: return telemetry.getAccelerationY();
+			case ACCELERATION_Z: return telemetry.getAccelerationZ();
+			case MISSION_PAD_ID: return telemetry.getMissionPadId();
+			case MISSION_PAD_X: return telemetry.getMissionPadX();
+			case MISSION_PAD_Y: return telemetry.getMissionPadY();
+			case MISSION_PAD_Z: return telemetry.getMissionPadZ();
+		}
+		
+		return 0;
+	}
+}
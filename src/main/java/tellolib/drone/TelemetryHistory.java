@@ -0,0 +1,319 @@
+package tellolib.drone;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer holding the recent history of the status values of one drone.
+ * Fed by the status monitor with each snapshot, it keeps the last capacity
+ * samples (5 minutes at the 10 Hz status rate by default) in preallocated
+ * primitive arrays, so recording a sample allocates nothing.
+ * <p>
+ * Window queries cover the samples received in the last T milliseconds
+ * before the newest sample. Any number of threads may query while the status
+ * monitor records. A query that finds samples it read were overwritten while
+ * it ran simply runs again.
+ */
+public class TelemetryHistory
+{
+	/**
+	 * Default capacity, 5 minutes of samples at 10 Hz.
+	 */
+	public static final int	DEFAULT_CAPACITY = 5 * 60 * 10;
+
+	private static final TelemetryField[]	FIELDS = TelemetryField.values();
+
+	private static final int	MIN = 0, MAX = 1, MEAN = 2, SLOPE = 3, COUNT = 4, SPAN = 5;
+
+	private final int			capacity;
+
+	// Receive time of each sample and the values of each sample, field
+	// values of one sample are stored next to each other.
+	private final AtomicLongArray	times, values;
+
+	// Number of samples started and finished writing. Slots of samples
+	// below (writeStarted - capacity) may have been overwritten.
+	private volatile long		writeStarted, written;
+
+	/**
+	 * Create a history with the default capacity.
+	 */
+	public TelemetryHistory()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a history.
+	 * @param capacity Number of samples to keep.
+	 */
+	public TelemetryHistory(int capacity)
+	{
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+
+		this.capacity = capacity;
+
+		times = new AtomicLongArray(capacity);
+		values = new AtomicLongArray(capacity * FIELDS.length);
+	}
+
+	/**
+	 * Record a sample. Only one thread, the status monitor, may record.
+	 * @param telemetry The sample.
+	 */
+	public void record(TelemetrySnapshot telemetry)
+	{
+		long index = written;
+		int slot = (int) (index % capacity), base = slot * FIELDS.length;
+
+		writeStarted = index + 1;
+
+		times.set(slot, telemetry.getReceiveTime());
+
+		for (int i = 0; i < FIELDS.length; i++)
+			values.set(base + i, Double.doubleToRawLongBits(FIELDS[i].valueOf(telemetry)));
+
+		written = index + 1;
+	}
+
+	/**
+	 * Get the number of samples held.
+	 * @return Number of samples, at most the capacity.
+	 */
+	public int size()
+	{
+		return (int) Math.min(written, capacity);
+	}
+
+	/**
+	 * Get the capacity.
+	 * @return Number of samples kept.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Lowest value of a field in the window.
+	 * @param field The field.
+	 * @param windowMillis Window length in milliseconds.
+	 * @return Lowest value or NaN if no samples.
+	 */
+	public double min(TelemetryField field, long windowMillis)
+	{
+		return scan(field, windowMillis, MIN);
+	}
+
+	/**
+	 * Highest value of a field in the window.
+	 * @param field The field.
+	 * @param windowMillis Window length in milliseconds.
+	 * @return Highest value or NaN if no samples.
+	 */
+	public double max(TelemetryField field, long windowMillis)
+	{
+		return scan(field, windowMillis, MAX);
+	}
+
+	/**
+	 * Mean value of a field in the window.
+	 * @param field The field.
+	 * @param windowMillis Window length in milliseconds.
+	 * @return Mean value or NaN if no samples.
+	 */
+	public double mean(TelemetryField field, long windowMillis)
+	{
+		return scan(field, windowMillis, MEAN);
+	}
+
+	/**
+	 * Rate of change of a field in the window, least squares fit.
+	 * For instance the battery drain rate is slope(BATTERY, 60000) * 60 %/minute.
+	 * @param field The field.
+	 * @param windowMillis Window length in milliseconds.
+	 * @return Change per second or NaN if less than two samples.
+	 */
+	public double slope(TelemetryField field, long windowMillis)
+	{
+		return scan(field, windowMillis, SLOPE);
+	}
+
+	/**
+	 * Number of samples in the window.
+	 * @param windowMillis Window length in milliseconds.
+	 * @return Sample count.
+	 */
+	public int count(long windowMillis)
+	{
+		double count = scan(TelemetryField.BATTERY, windowMillis, COUNT);
+
+		return Double.isNaN(count) ? 0 : (int) count;
+	}
+
+	/**
+	 * Time between the oldest and newest samples in the window.
+	 * @param windowMillis Window length in milliseconds.
+	 * @return Milliseconds covered, 0 if less than two samples.
+	 */
+	public long span(long windowMillis)
+	{
+		double span = scan(TelemetryField.BATTERY, windowMillis, SPAN);
+
+		return Double.isNaN(span) ? 0 : (long) span;
+	}
+
+	/**
+	 * Receive time of the newest sample.
+	 * @return System.nanoTime() at receipt or 0 if no samples.
+	 */
+	public long getLatestTime()
+	{
+		long end = written;
+
+		return end == 0 ? 0 : times.get((int) ((end - 1) % capacity));
+	}
+
+	/**
+	 * Receive time of the sample received closest to a time, for instance
+	 * the decode time of a video frame, to check how far apart they are.
+	 * @param time System.nanoTime() to match.
+	 * @return System.nanoTime() at receipt of the closest sample or 0 if no samples.
+	 */
+	public long nearestTime(long time)
+	{
+		while (true)
+		{
+			long index = nearest(time);
+
+			if (index < 0) return 0;
+
+			long result = times.get((int) (index % capacity));
+
+			if (index >= writeStarted - capacity) return result;
+		}
+	}
+
+	/**
+	 * Value of a field in the sample received closest to a time, for
+	 * instance the attitude of the drone when a video frame was decoded.
+	 * @param field The field.
+	 * @param time System.nanoTime() to match.
+	 * @return Value or NaN if no samples.
+	 */
+	public double valueAt(TelemetryField field, long time)
+	{
+		while (true)
+		{
+			long index = nearest(time);
+
+			if (index < 0) return Double.NaN;
+
+			double result = Double.longBitsToDouble(values.get((int) (index % capacity) * FIELDS.length + field.ordinal()));
+
+			if (index >= writeStarted - capacity) return result;
+		}
+	}
+
+	// Index of the sample received closest to a time, -1 if none.
+	private long nearest(long time)
+	{
+		while (true)
+		{
+			long end = written;
+
+			if (end == 0) return -1;
+
+			long start = Math.max(0, end - capacity), low = start, high = end - 1;
+
+			// Binary search for the first sample received at or after the time,
+			// receive times only increase.
+
+			while (low < high)
+			{
+				long mid = (low + high) >>> 1;
+
+				if (times.get((int) (mid % capacity)) < time)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+
+			// The sample before it may be closer.
+
+			if (low > start && time - times.get((int) ((low - 1) % capacity)) <= times.get((int) (low % capacity)) - time)
+				low--;
+
+			// Retry if the writer has reused the oldest slot, which the search may
+			// have read.
+
+			if (start < writeStarted - capacity) continue;
+
+			return low;
+		}
+	}
+
+	private double scan(TelemetryField field, long windowMillis, int operation)
+	{
+		int offset = field.ordinal();
+
+		while (true)
+		{
+			long end = written;
+
+			if (end == 0) return Double.NaN;
+
+			long start = Math.max(0, end - capacity);
+			long latest = times.get((int) ((end - 1) % capacity));
+			long cutoff = latest - TimeUnit.MILLISECONDS.toNanos(windowMillis);
+			long oldest = latest, index;
+			int n = 0;
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			double sum = 0, sumT = 0, sumTT = 0, sumTV = 0;
+
+			// Walk back from the newest sample until outside the window.
+
+			for (index = end - 1; index >= start; index--)
+			{
+				int slot = (int) (index % capacity);
+				long time = times.get(slot);
+
+				if (time < cutoff) break;
+
+				double value = Double.longBitsToDouble(values.get(slot * FIELDS.length + offset));
+				double t = (time - latest) / 1e9;
+
+				if (value < min) min = value;
+				if (value > max) max = value;
+
+				sum += value;
+				sumT += t;
+				sumTT += t * t;
+				sumTV += t * value;
+				oldest = time;
+				n++;
+			}
+
+			// Retry if the writer has reused any slot we read.
+
+			if (index + 1 < writeStarted - capacity) continue;
+
+			if (n == 0) return Double.NaN;
+
+			switch (operation)
+			{
+				case MIN: return min;
+				case MAX: return max;
+				case MEAN: return sum / n;
+				case COUNT: return n;
+				case SPAN: return (latest - oldest) / 1e6;
+				case SLOPE:
+					double denominator = n * sumTT - sumT * sumT;
+					if (n < 2 || denominator == 0) return Double.NaN;
+					return (n * sumTV - sumT * sum) / denominator;
+			}
+
+			return Double.NaN;
+		}
+	}
+}
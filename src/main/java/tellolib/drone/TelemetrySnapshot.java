@@ -0,0 +1,302 @@
+package tellolib.drone;
+
+import tellolib.communication.TelloStatus;
+
+/**
+ * Immutable copy of the drone telemetry decoded from one status packet.
+ * A new snapshot is published by the status monitor for every packet, so all
+ * values of a snapshot, including the heading, belong to the same sample.
+ */
+public final class TelemetrySnapshot
+{
+	private final long		sequence, receiveTime;
+	private final int		battery, time, tempLow, tempHigh, tof, height;
+	private final double	barometer;
+	private final int		pitch, roll, yaw, heading;
+	private final int		velocityX, velocityY, velocityZ;
+	private final double	accelerationX, accelerationY, accelerationZ;
+	private final int		missionPadId, missionPadX, missionPadY, missionPadZ;
+	private final int		missionPadPitch, missionPadRoll, missionPadYaw;
+
+	TelemetrySnapshot( long sequence, long receiveTime, TelloStatus status, int heading )
+	{
+		this.sequence = sequence;
+		this.receiveTime = receiveTime;
+		this.heading = heading;
+
+		battery = status.getBattery();
+		time = status.getTime();
+		tempLow = status.getTempLow();
+		tempHigh = status.getTempHigh();
+		tof = status.getTof();
+		height = status.getHeight();
+		barometer = status.getBarometer();
+		pitch = status.getPitch();
+		roll = status.getRoll();
+		yaw = status.getYaw();
+		velocityX = status.getVelocityX();
+		velocityY = status.getVelocityY();
+		velocityZ = status.getVelocityZ();
+		accelerationX = status.getAccelerationX();
+		accelerationY = status.getAccelerationY();
+		accelerationZ = status.getAccelerationZ();
+		missionPadId = status.getMissionPadId();
+		missionPadX = status.getMissionPadX();
+		missionPadY = status.getMissionPadY();
+		missionPadZ = status.getMissionPadZ();
+		missionPadPitch = status.getMissionPadPitch();
+		missionPadRoll = status.getMissionPadRoll();
+		missionPadYaw = status.getMissionPadYaw();
+	}
+
+	/**
+	 * Sequence number of the packet, starts at 1 and increases by one per packet.
+	 * @return Sequence number.
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Time the packet was received.
+	 * @return System.nanoTime() at receipt.
+	 */
+	public long getReceiveTime()
+	{
+		return receiveTime;
+	}
+
+	/**
+	 * Age of this sample.
+	 * @return Milliseconds since the packet was received.
+	 */
+	public long getAgeMillis()
+	{
+		return (System.nanoTime() - receiveTime) / 1000000;
+	}
+
+	/**
+	 * Battery level.
+	 * @return Battery level 0-100%.
+	 */
+	public int getBattery()
+	{
+		return battery;
+	}
+
+	/**
+	 * Motor on time.
+	 * @return Time in seconds.
+	 */
+	public int getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Lowest temperature.
+	 * @return Temperature in degrees C.
+	 */
+	public int getTempLow()
+	{
+		return tempLow;
+	}
+
+	/**
+	 * Highest temperature.
+	 * @return Temperature in degrees C.
+	 */
+	public int getTempHigh()
+	{
+		return tempHigh;
+	}
+
+	/**
+	 * TOF distance.
+	 * @return Distance in cm.
+	 */
+	public int getTof()
+	{
+		return tof;
+	}
+
+	/**
+	 * Height.
+	 * @return Height in cm.
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Barometer.
+	 * @return Barometer height in cm.
+	 */
+	public double getBarometer()
+	{
+		return barometer;
+	}
+
+	/**
+	 * Pitch.
+	 * @return Pitch in degrees.
+	 */
+	public int getPitch()
+	{
+		return pitch;
+	}
+
+	/**
+	 * Roll.
+	 * @return Roll in degrees.
+	 */
+	public int getRoll()
+	{
+		return roll;
+	}
+
+	/**
+	 * Raw yaw, see {@link TelloDroneInterface#getRawYaw()}.
+	 * @return Yaw in degrees.
+	 */
+	public int getYaw()
+	{
+		return yaw;
+	}
+
+	/**
+	 * Heading computed from this sample's yaw, see {@link TelloDroneInterface#getHeading()}.
+	 * @return Heading 0-359 in degrees.
+	 */
+	public int getHeading()
+	{
+		return heading;
+	}
+
+	/**
+	 * Velocity x.
+	 * @return Velocity in cm/s.
+	 */
+	public int getVelocityX()
+	{
+		return velocityX;
+	}
+
+	/**
+	 * Velocity y.
+	 * @return Velocity in cm/s.
+	 */
+	public int getVelocityY()
+	{
+		return velocityY;
+	}
+
+	/**
+	 * Velocity z.
+	 * @return Velocity in cm/s.
+	 */
+	public int getVelocityZ()
+	{
+		return velocityZ;
+	}
+
+	/**
+	 * Acceleration x.
+	 * @return Acceleration in .001 g.
+	 */
+	public double getAccelerationX()
+	{
+		return accelerationX;
+	}
+
+	/**
+	 * Acceleration y.
+	 * @return Acceleration in .001 g.
+	 */
+	public double getAccelerationY()
+	{
+		return accelerationY;
+	}
+
+	/**
+	 * Acceleration z.
+	 * @return Acceleration in .001 g.
+	 */
+	public double getAccelerationZ()
+	{
+		return accelerationZ;
+	}
+
+	/**
+	 * Mission pad id.
+	 * @return Mission pad id 1-8 or negative if no pad detected.
+	 */
+	public int getMissionPadId()
+	{
+		return missionPadId;
+	}
+
+	/**
+	 * Mission pad x.
+	 * @return Mission pad x in cm.
+	 */
+	public int getMissionPadX()
+	{
+		return missionPadX;
+	}
+
+	/**
+	 * Mission pad y.
+	 * @return Mission pad y in cm.
+	 */
+	public int getMissionPadY()
+	{
+		return missionPadY;
+	}
+
+	/**
+	 * Mission pad z.
+	 * @return Mission pad z in cm.
+	 */
+	public int getMissionPadZ()
+	{
+		return missionPadZ;
+	}
+
+	/**
+	 * Mission pad pitch.
+	 * @return Mission pad pitch in degrees.
+	 */
+	public int getMissionPadPitch()
+	{
+		return missionPadPitch;
+	}
+
+	/**
+	 * Mission pad roll.
+	 * @return Mission pad roll in degrees.
+	 */
+	public int getMissionPadRoll()
+	{
+		return missionPadRoll;
+	}
+
+	/**
+	 * Mission pad yaw.
+	 * @return Mission pad yaw in degrees.
+	 */
+	public int getMissionPadYaw()
+	{
+		return missionPadYaw;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "TelemetrySnapshot{seq=" + sequence + ";bat=" + battery + ";h=" + height + ";tof=" + tof
+				+ ";pitch=" + pitch + ";roll=" + roll + ";yaw=" + yaw + ";heading=" + heading
+				+ ";mid=" + missionPadId + '}';
+	}
+}
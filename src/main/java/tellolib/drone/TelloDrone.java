@@ -1,6 +1,7 @@
 package tellolib.drone;
 
 import tellolib.communication.TelloConnection;
+import tellolib.communication.TelloStatus;
 
 /**
  * TelloDrone class holds information about the drone,
@@ -18,20 +19,27 @@ public class TelloDrone implements TelloDroneInterface
    */
   public static final Integer UDP_PORT = 8889, UDP_STATUS_PORT = 8890, UDP_VIDEO_PORT = 11111;
   
-  private int				battery, height, speed, time, temp, attitude[];
-  private int				missionPadId, missionPadxyz[], missionPadpry[];
-  private int				heading, headingZeroOffset = 9999, yawZeroOffset = 9999;
-  private double			barometer, tof, acceleration[], velocity[];
+  private volatile int		battery, height, speed, time, temp, attitude[];
+  private volatile int		missionPadId, missionPadxyz[], missionPadpry[];
+  private volatile int		heading, headingZeroOffset = 9999, yawZeroOffset = 9999;
+  private volatile double	barometer, tof, acceleration[], velocity[];
+  private volatile TelemetrySnapshot	snapshot;
+  private final TelemetryHistory	history = new TelemetryHistory();
+  private long				sequence;
   private String			sn, sdk;
   private TelloConnection 	telloConnection;
   private TelloMode 		telloMode;
   private boolean			missionModeEnabled, flying;
   private TelloModel		telloModel = TelloModel.EDU;
 
-  // Private constructor, holder class and getInstance() implement this
-  // class as a singleton.
+  // Holder class and getInstance() implement the global instance used by
+  // single drone programs.
 	
-  private TelloDrone() 
+  /**
+   * Create a TelloDrone instance for one drone of a swarm. Single drone
+   * programs should use getInstance().
+   */
+  public TelloDrone() 
   {
 	  telloConnection = TelloConnection.DISCONNECTED;
 	  telloMode = TelloMode.NORMAL;
@@ -277,20 +285,72 @@ public class TelloDrone implements TelloDroneInterface
   
   private void updateHeading()
   {
-	  int yaw = getRawYaw();
-	  
+	  heading = computeHeading(getRawYaw());
+  }
+  
+  private int computeHeading( int yaw )
+  {
 	  if (headingZeroOffset == 9999) 
 	  {
-		  resetHeadingZero();
-		  resetYawZero();
+		  headingZeroOffset = yaw;
+		  yawZeroOffset = yaw;
 	  }
 
 	  yaw -= headingZeroOffset;
 	  
 	  if (yaw < 0)
-		  heading = 360 + yaw;
+		  return 360 + yaw;
 	  else
-		  heading = yaw;
+		  return yaw;
+  }
+
+  /**
+   * Record the telemetry from a status packet. Publishes a new snapshot
+   * and updates the individual values returned by the getters. Called by
+   * the status monitor for each status packet, not part of the drone API.
+   * @param status Values decoded from the packet.
+   * @param receiveTime System.nanoTime() when the packet was received.
+   * @return The published snapshot.
+   */
+  public TelemetrySnapshot publishTelemetry( TelloStatus status, long receiveTime )
+  {
+	  // Heading is computed from the same yaw as the snapshot holds, then the
+	  // snapshot is published with a single volatile write.
+	  int snapshotHeading = computeHeading(status.getYaw());
+	  
+	  TelemetrySnapshot telemetry = new TelemetrySnapshot(++sequence, receiveTime, status, snapshotHeading);
+	  
+	  snapshot = telemetry;
+	  
+	  // Keep the individual values up to date for the getters below.
+	  
+	  battery = telemetry.getBattery();
+	  time = telemetry.getTime();
+	  temp = telemetry.getTempHigh();
+	  tof = telemetry.getTof();
+	  height = telemetry.getHeight();
+	  barometer = telemetry.getBarometer();
+	  missionPadId = telemetry.getMissionPadId();
+	  attitude = new int[] {telemetry.getPitch(), telemetry.getRoll(), telemetry.getYaw()};
+	  acceleration = new double[] {telemetry.getAccelerationX(), telemetry.getAccelerationY(), telemetry.getAccelerationZ()};
+	  velocity = new double[] {telemetry.getVelocityX(), telemetry.getVelocityY(), telemetry.getVelocityZ()};
+	  missionPadxyz = new int[] {telemetry.getMissionPadX(), telemetry.getMissionPadY(), telemetry.getMissionPadZ()};
+	  missionPadpry = new int[] {telemetry.getMissionPadPitch(), telemetry.getMissionPadRoll(), telemetry.getMissionPadYaw()};
+	  heading = snapshotHeading;
+	  
+	  return telemetry;
+  }
+
+  @Override
+  public TelemetrySnapshot getSnapshot()
+  {
+	  return snapshot;
+  }
+
+  @Override
+  public TelemetryHistory getHistory()
+  {
+	  return history;
   }
   
   @Override
@@ -301,6 +301,22 @@ public interface TelloDroneInterface
   	 */
   	public boolean isFlying();
   	
+  	/**
+  	 * Get the telemetry of the last status packet as one consistent sample.
+  	 * Does not lock, safe to call from any thread.
+	 * Only valid when status monitoring enabled.
+  	 * @return Last published snapshot or null if no status received yet.
+  	 */
+  	public TelemetrySnapshot getSnapshot();
+  	
+  	/**
+  	 * Get the recent history of the status values, recorded by the status
+  	 * monitor for each status packet.
+	 * Only valid when status monitoring enabled.
+  	 * @return The history.
+  	 */
+  	public TelemetryHistory getHistory();
+  	
   	/**
   	 * Return drone connection status.
   	 * @return True if connected, false if not.
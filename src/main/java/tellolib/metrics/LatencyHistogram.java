@@ -0,0 +1,164 @@
+package tellolib.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Values are counted in
+ * buckets that split each power of two into 8 steps, so percentiles are
+ * accurate to about 12%. Recording allocates nothing and may be done from
+ * any number of threads.
+ */
+public class LatencyHistogram
+{
+	private static final int	SUB_BUCKETS = 8, SUB_BITS = 3;
+	private static final int	BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+	private final String			name;
+	private final AtomicLongArray	counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong		count = new AtomicLong(), total = new AtomicLong(), max = new AtomicLong();
+
+	/**
+	 * Create a histogram.
+	 * @param name Name used in toString().
+	 */
+	public LatencyHistogram(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Get the histogram name.
+	 * @return The name.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Record a latency.
+	 * @param nanos Latency in nanoseconds, negative values are recorded as 0.
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0) nanos = 0;
+
+		counts.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+
+		long current;
+
+		while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos));
+	}
+
+	/**
+	 * Record the time elapsed since a start time.
+	 * @param startNanos System.nanoTime() at start.
+	 */
+	public void recordSince(long startNanos)
+	{
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Number of latencies recorded.
+	 * @return The count.
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Mean latency.
+	 * @return Mean in nanoseconds, 0 if none recorded.
+	 */
+	public long getMean()
+	{
+		long n = count.get();
+
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * Highest latency.
+	 * @return Maximum in nanoseconds.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Latency below which the given fraction of the recorded latencies fall.
+	 * @param percentile Percentile 0-100.
+	 * @return Upper bound of the bucket holding the percentile in nanoseconds, 0 if none recorded.
+	 */
+	public long getPercentile(double percentile)
+	{
+		long n = 0;
+
+		for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+
+		if (n == 0) return 0;
+
+		long rank = (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100), seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts.get(i);
+
+			if (seen >= rank && seen > 0) return Math.min(upperBoundOf(i), max.get());
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * Clear all recorded latencies.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s{n=%d;mean=%.3fms;p50=%.3fms;p99=%.3fms;max=%.3fms}", name, getCount(),
+				toMillis(getMean()), toMillis(getPercentile(50)), toMillis(getPercentile(99)), toMillis(getMax()));
+	}
+
+	private static double toMillis(long nanos)
+	{
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	// Values below SUB_BUCKETS get a bucket each, above that each power of
+	// two is split into SUB_BUCKETS buckets.
+	private static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS) return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBoundOf(int bucket)
+	{
+		if (bucket < SUB_BUCKETS) return bucket;
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1, sub = bucket % SUB_BUCKETS;
+
+		return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+}
@@ -0,0 +1,240 @@
+package tellolib.simulator;
+
+import java.util.Locale;
+
+/**
+ * Simple kinematic model of a simulated Tello. Movement commands move the
+ * drone in a straight line at the set speed, rc commands set a velocity.
+ * Position is in cm from the take off point, x forward and y right at yaw 0.
+ */
+class Kinematics
+{
+	private static final double	TAKE_OFF_HEIGHT = 80, VERTICAL_SPEED = 40, ROTATION_SPEED = 90;
+
+	// Battery drain while flying and while idle, % per second.
+	private static final double	FLYING_DRAIN = 1.0 / 15, IDLE_DRAIN = 1.0 / 300;
+
+	private double		x, y, z, yaw;
+	private double		velocityX, velocityY, velocityZ;
+	private double		battery = 100, flightTime;
+	private int			speed = 100;
+	private boolean		flying;
+
+	// Current movement, from start to target between startTime and endTime.
+	private double		startX, startY, startZ, startYaw, targetX, targetY, targetZ, targetYaw;
+	private long		startTime, endTime;
+	private boolean		moving;
+
+	// Current rc stick positions, -100 to 100.
+	private int			rcRight, rcForward, rcUp, rcYaw;
+
+	private long		lastUpdate = System.nanoTime();
+
+	synchronized void setBattery(int battery)
+	{
+		this.battery = battery;
+	}
+
+	synchronized void setSpeed(int speed)
+	{
+		this.speed = speed;
+	}
+
+	synchronized boolean isFlying()
+	{
+		return flying;
+	}
+
+	synchronized int getBattery()
+	{
+		update(System.nanoTime());
+		return (int) Math.ceil(battery);
+	}
+
+	synchronized int getSpeed()
+	{
+		return speed;
+	}
+
+	synchronized int getFlightTime()
+	{
+		update(System.nanoTime());
+		return (int) flightTime;
+	}
+
+	synchronized int getHeight()
+	{
+		update(System.nanoTime());
+		return (int) z;
+	}
+
+	synchronized int getTof()
+	{
+		update(System.nanoTime());
+		return (int) z + 10;
+	}
+
+	synchronized int getYaw()
+	{
+		update(System.nanoTime());
+		return normalize(yaw);
+	}
+
+	synchronized double getBarometer()
+	{
+		update(System.nanoTime());
+		return 182.5 + z / 100;
+	}
+
+	synchronized long takeOff(long now, double timeScale)
+	{
+		update(now);
+
+		flying = true;
+
+		return moveTo(now, x, y, TAKE_OFF_HEIGHT, yaw, Math.abs(TAKE_OFF_HEIGHT - z) / VERTICAL_SPEED, timeScale);
+	}
+
+	synchronized long land(long now, double timeScale)
+	{
+		update(now);
+
+		long done = moveTo(now, x, y, 0, yaw, z / VERTICAL_SPEED, timeScale);
+
+		rcRight = rcForward = rcUp = rcYaw = 0;
+
+		return done;
+	}
+
+	synchronized void emergency(long now)
+	{
+		update(now);
+
+		z = 0;
+		flying = moving = false;
+		rcRight = rcForward = rcUp = rcYaw = 0;
+	}
+
+	synchronized void stop(long now)
+	{
+		update(now);
+
+		moving = false;
+		rcRight = rcForward = rcUp = rcYaw = 0;
+	}
+
+	synchronized void rc(int right, int forward, int up, int yaw, long now)
+	{
+		update(now);
+
+		moving = false;
+		rcRight = right;
+		rcForward = forward;
+		rcUp = up;
+		rcYaw = yaw;
+	}
+
+	/**
+	 * Start a movement relative to the current position and heading.
+	 * @return Time the movement completes.
+	 */
+	synchronized long move(long now, int forward, int right, int up, int rotate, int moveSpeed, double timeScale)
+	{
+		update(now);
+
+		rcRight = rcForward = rcUp = rcYaw = 0;
+
+		double heading = Math.toRadians(yaw);
+		double dx = forward * Math.cos(heading) - right * Math.sin(heading);
+		double dy = forward * Math.sin(heading) + right * Math.cos(heading);
+		double distance = Math.sqrt(dx * dx + dy * dy + up * up);
+		double seconds = Math.max(distance / (moveSpeed > 0 ? moveSpeed : speed), Math.abs(rotate) / ROTATION_SPEED);
+
+		return moveTo(now, x + dx, y + dy, Math.max(0, z + up), yaw + rotate, seconds, timeScale);
+	}
+
+	/**
+	 * Advance the model and format a status packet.
+	 */
+	synchronized void status(long now, StringBuilder status)
+	{
+		update(now);
+
+		status.setLength(0);
+		status.append("mid:-1;x:0;y:0;z:0;mpry:0,0,0;pitch:0;roll:0;yaw:").append(normalize(yaw))
+			  .append(";vgx:").append((int) velocityX).append(";vgy:").append((int) velocityY)
+			  .append(";vgz:").append((int) velocityZ).append(";templ:63;temph:65;tof:").append((int) z + 10)
+			  .append(";h:").append((int) z).append(";bat:").append((int) Math.ceil(battery))
+			  .append(";baro:").append(String.format(Locale.US, "%.2f", 182.5 + z / 100))
+			  .append(";time:").append((int) flightTime).append(";agx:0.00;agy:0.00;agz:-1000.00;\r\n");
+	}
+
+	private long moveTo(long now, double toX, double toY, double toZ, double toYaw, double seconds, double timeScale)
+	{
+		startX = x; startY = y; startZ = z; startYaw = yaw;
+		targetX = toX; targetY = toY; targetZ = toZ; targetYaw = toYaw;
+		startTime = now;
+		endTime = now + (long) (seconds * timeScale * 1e9);
+		moving = true;
+
+		update(now);
+
+		return endTime;
+	}
+
+	// Advance position, velocity, battery and flight time to now.
+	private void update(long now)
+	{
+		double dt = Math.max(0, (now - lastUpdate) / 1e9);
+		double lastX = x, lastY = y, lastZ = z;
+
+		lastUpdate = now;
+
+		if (moving)
+		{
+			double fraction = endTime <= startTime ? 1 : Math.min(1, (double) (now - startTime) / (endTime - startTime));
+
+			x = startX + (targetX - startX) * fraction;
+			y = startY + (targetY - startY) * fraction;
+			z = startZ + (targetZ - startZ) * fraction;
+			yaw = startYaw + (targetYaw - startYaw) * fraction;
+
+			if (fraction >= 1)
+			{
+				moving = false;
+				if (z <= 0) flying = false;
+			}
+		}
+		else if (flying)
+		{
+			double heading = Math.toRadians(yaw);
+			double forward = rcForward * speed / 100.0 * dt, right = rcRight * speed / 100.0 * dt;
+
+			x += forward * Math.cos(heading) - right * Math.sin(heading);
+			y += forward * Math.sin(heading) + right * Math.cos(heading);
+			z = Math.max(0, z + rcUp * VERTICAL_SPEED / 100.0 * dt);
+			yaw += rcYaw * ROTATION_SPEED / 100.0 * dt;
+		}
+
+		if (dt > 0)
+		{
+			velocityX = (x - lastX) / dt;
+			velocityY = (y - lastY) / dt;
+			velocityZ = (z - lastZ) / dt;
+		}
+
+		if (flying) flightTime += dt;
+
+		battery = Math.max(0, battery - dt * (flying ? FLYING_DRAIN : IDLE_DRAIN));
+	}
+
+	private static int normalize(double yaw)
+	{
+		int degrees = (int) Math.round(yaw) % 360;
+
+		if (degrees > 180) degrees -= 360;
+		if (degrees < -180) degrees += 360;
+
+		return degrees;
+	}
+}
@@ -0,0 +1,583 @@
+package tellolib.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import tellolib.command.TelloCommandValues;
+
+/**
+ * Simulates a Tello on the local machine for load, latency and soak testing
+ * without a drone. Answers the SDK commands in {@link TelloCommandValues},
+ * sends status packets from a simple kinematic model of the drone and, after
+ * streamon, a synthetic H.264 shaped video stream.
+ * <p>
+ * The simulator listens for commands on its command port and sends status
+ * and video to the status and video ports on the host the commands came
+ * from. As the library binds the command port locally too, run the
+ * simulator on another command port and connect to it as a swarm drone:
+ * <pre>
+ * TelloSimulator simulator = new TelloSimulator(9889, 8890, 11111);
+ * simulator.start();
+ * TelloSwarm swarm = new TelloSwarm(8889, 8890);
+ * swarm.open();
+ * DroneHandle drone = swarm.addDrone(new InetSocketAddress("127.0.0.1", 9889));
+ * </pre>
+ * Latency, jitter, packet loss and error responses can be injected to
+ * exercise timeout and retry handling. Responses are sent in command order.
+ */
+public class TelloSimulator implements Closeable
+{
+	private final Logger		logger = Logger.getLogger("Tello");
+
+	private static final int	VIDEO_PACKET_SIZE = 1460;
+
+	private final int			commandPort, statusPort, videoPort;
+
+	private volatile int		latency, jitter, statusRate = 10, frameRate = 30, videoBitRate = 2_000_000;
+	private volatile double		lossRate, errorRate, motionTimeScale = 1;
+
+	private DatagramChannel		commandChannel, statusChannel, videoChannel;
+	private Thread				receiveThread;
+	private ScheduledThreadPoolExecutor	scheduler;
+	private ScheduledFuture<?>	statusTask, videoTask;
+
+	private volatile InetSocketAddress	client;
+
+	private final Kinematics	drone = new Kinematics();
+
+	// Time the last response is due, responses are never sent out of order.
+	private long				lastReplyTime;
+
+	private final AtomicLong	commands = new AtomicLong(), lost = new AtomicLong(),
+								errors = new AtomicLong(), statusPackets = new AtomicLong(),
+								videoPackets = new AtomicLong();
+
+	// Only used on the scheduler thread.
+	private final StringBuilder	status = new StringBuilder(256);
+	private final ByteBuffer	statusBuffer = ByteBuffer.allocateDirect(256);
+	private final ByteBuffer	videoBuffer = ByteBuffer.allocateDirect(VIDEO_PACKET_SIZE);
+	private byte[]				keyFrame, frame;
+	private long				frameNumber;
+
+	/**
+	 * Create a simulator on the standard Tello ports.
+	 */
+	public TelloSimulator()
+	{
+		this(8889, 8890, 11111);
+	}
+
+	/**
+	 * Create a simulator.
+	 * @param commandPort Port to receive commands on.
+	 * @param statusPort Port on the client host to send status to.
+	 * @param videoPort Port on the client host to send video to.
+	 */
+	public TelloSimulator(int commandPort, int statusPort, int videoPort)
+	{
+		this.commandPort = commandPort;
+		this.statusPort = statusPort;
+		this.videoPort = videoPort;
+	}
+
+	/**
+	 * Set delay before each response is sent.
+	 * @param latency Delay in milliseconds.
+	 */
+	public void setLatency(int latency)
+	{
+		this.latency = latency;
+	}
+
+	/**
+	 * Set random variation added to the latency.
+	 * @param jitter Maximum extra delay in milliseconds.
+	 */
+	public void setJitter(int jitter)
+	{
+		this.jitter = jitter;
+	}
+
+	/**
+	 * Set the fraction of commands, responses and status packets lost.
+	 * @param lossRate 0 to 1.
+	 */
+	public void setLossRate(double lossRate)
+	{
+		this.lossRate = lossRate;
+	}
+
+	/**
+	 * Set the fraction of commands answered with "error" instead of executed.
+	 * @param errorRate 0 to 1.
+	 */
+	public void setErrorRate(double errorRate)
+	{
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Set the status packet rate. Takes effect on start().
+	 * @param statusRate Packets per second.
+	 */
+	public void setStatusRate(int statusRate)
+	{
+		this.statusRate = statusRate;
+	}
+
+	/**
+	 * Set the video frame rate and bit rate. Takes effect on streamon.
+	 * @param frameRate Frames per second.
+	 * @param videoBitRate Bits per second.
+	 */
+	public void setVideo(int frameRate, int videoBitRate)
+	{
+		this.frameRate = frameRate;
+		this.videoBitRate = videoBitRate;
+	}
+
+	/**
+	 * Set how long movement commands take compared to a real drone.
+	 * @param motionTimeScale 1 for real time, 0.1 for 10 times faster,
+	 * 0 to complete movements at once.
+	 */
+	public void setMotionTimeScale(double motionTimeScale)
+	{
+		this.motionTimeScale = motionTimeScale;
+	}
+
+	/**
+	 * Set the battery level.
+	 * @param battery Battery level 0-100%.
+	 */
+	public void setBattery(int battery)
+	{
+		drone.setBattery(battery);
+	}
+
+	/**
+	 * Start answering commands and sending status.
+	 * @throws IOException If the command port can't be bound.
+	 */
+	public synchronized void start() throws IOException
+	{
+		if (commandChannel != null) return;
+
+		commandChannel = DatagramChannel.open();
+		// Room for bursts of pipelined commands.
+		commandChannel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 1024);
+		commandChannel.bind(new InetSocketAddress(commandPort));
+		statusChannel = DatagramChannel.open();
+		videoChannel = DatagramChannel.open();
+
+		scheduler = new ScheduledThreadPoolExecutor(1, runnable ->
+		{
+			Thread thread = new Thread(runnable, "TelloSimulator scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+
+		statusTask = scheduler.scheduleAtFixedRate(this::sendStatus, 0, 1_000_000_000L / statusRate, TimeUnit.NANOSECONDS);
+
+		receiveThread = new Thread(this::receive, "TelloSimulator");
+		receiveThread.setDaemon(true);
+		receiveThread.start();
+
+		logger.info("simulator listening on port " + commandPort);
+	}
+
+	/**
+	 * Stop the simulator.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (commandChannel == null) return;
+
+		scheduler.shutdownNow();
+
+		try
+		{
+			commandChannel.close();
+			statusChannel.close();
+			videoChannel.close();
+		}
+		catch (IOException e) { logger.warning("simulator close failed: " + e.toString()); }
+
+		commandChannel = null;
+
+		logger.info(String.format("simulator stopped, %d commands, %d lost, %d errors, %d status, %d video packets",
+				getCommandCount(), getLostCount(), getErrorCount(), getStatusCount(), getVideoCount()));
+	}
+
+	/**
+	 * Number of commands received, including lost ones.
+	 * @return Command count.
+	 */
+	public long getCommandCount()
+	{
+		return commands.get();
+	}
+
+	/**
+	 * Number of commands, responses and status packets dropped by loss injection.
+	 * @return Lost count.
+	 */
+	public long getLostCount()
+	{
+		return lost.get();
+	}
+
+	/**
+	 * Number of commands answered with an injected error.
+	 * @return Error count.
+	 */
+	public long getErrorCount()
+	{
+		return errors.get();
+	}
+
+	/**
+	 * Number of status packets sent.
+	 * @return Status packet count.
+	 */
+	public long getStatusCount()
+	{
+		return statusPackets.get();
+	}
+
+	/**
+	 * Number of video packets sent.
+	 * @return Video packet count.
+	 */
+	public long getVideoCount()
+	{
+		return videoPackets.get();
+	}
+
+	// Runs on the receive thread.
+	private void receive()
+	{
+		DatagramChannel channel = commandChannel;
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+		try
+		{
+			while (true)
+			{
+				buffer.clear();
+
+				InetSocketAddress sender = (InetSocketAddress) channel.receive(buffer);
+
+				buffer.flip();
+
+				client = sender;
+
+				commands.incrementAndGet();
+
+				if (lose()) continue;
+
+				String command = StandardCharsets.UTF_8.decode(buffer).toString().trim();
+
+				logger.finer("simulator received: " + command);
+
+				execute(command, sender);
+			}
+		}
+		catch (ClosedChannelException e) { }
+		catch (Exception e) { logger.warning("simulator receive failed: " + e.toString()); }
+	}
+
+	private void execute(String command, InetSocketAddress sender)
+	{
+		String[] words = command.split(" ");
+		long now = System.nanoTime(), done = now;
+		String response;
+
+		if (!words[0].equals(TelloCommandValues.COMMAND_MODE) && !words[0].equals(TelloCommandValues.RC) &&
+			ThreadLocalRandom.current().nextDouble() < errorRate)
+		{
+			errors.incrementAndGet();
+			response = "error";
+		}
+		else
+		{
+			try
+			{
+				response = "ok";
+
+				switch (words[0])
+				{
+					case TelloCommandValues.RC:
+						drone.rc(arg(words, 1, -100, 100), arg(words, 2, -100, 100), arg(words, 3, -100, 100),
+								 arg(words, 4, -100, 100), now);
+						return;		// No response to rc.
+
+					case TelloCommandValues.COMMAND_MODE:
+					case TelloCommandValues.MON:
+					case TelloCommandValues.MOFF:
+					case TelloCommandValues.MDIRECTION:
+					case TelloCommandValues.STATION_MODE:
+					case "wifi":
+						break;
+
+					case TelloCommandValues.ENABLE_VIDEO_STREAM: startVideo(); break;
+					case TelloCommandValues.DISABLE_VIDEO_STREAM: stopVideo(); break;
+
+					case TelloCommandValues.SPEED: drone.setSpeed(arg(words, 1, 10, 100)); break;
+
+					case TelloCommandValues.TAKE_OFF: done = drone.takeOff(now, motionTimeScale); break;
+					case TelloCommandValues.LAND: done = drone.land(now, motionTimeScale); break;
+					case TelloCommandValues.EMERGENCY: drone.emergency(now); break;
+					case TelloCommandValues.STOP: drone.stop(now); break;
+
+					case TelloCommandValues.UP: done = move(now, 0, 0, arg(words, 1, 20, 500), 0, 0); break;
+					case TelloCommandValues.DOWN: done = move(now, 0, 0, -arg(words, 1, 20, 500), 0, 0); break;
+					case TelloCommandValues.LEFT: done = move(now, 0, -arg(words, 1, 20, 500), 0, 0, 0); break;
+					case TelloCommandValues.RIGHT: done = move(now, 0, arg(words, 1, 20, 500), 0, 0, 0); break;
+					case TelloCommandValues.FORWARD: done = move(now, arg(words, 1, 20, 500), 0, 0, 0, 0); break;
+					case TelloCommandValues.BACK: done = move(now, -arg(words, 1, 20, 500), 0, 0, 0, 0); break;
+					case TelloCommandValues.CW: done = move(now, 0, 0, 0, arg(words, 1, 1, 3600), 0); break;
+					case TelloCommandValues.CCW: done = move(now, 0, 0, 0, -arg(words, 1, 1, 3600), 0); break;
+					case TelloCommandValues.FLIP: done = move(now, 0, 0, 0, 0, 0) + scale(1_000_000_000L); break;
+
+					case TelloCommandValues.GO:
+						done = move(now, arg(words, 1, -500, 500), arg(words, 2, -500, 500), arg(words, 3, -500, 500), 0,
+									arg(words, 4, 10, 100));
+						break;
+
+					case TelloCommandValues.CURVE:
+						done = move(now, arg(words, 4, -500, 500), arg(words, 5, -500, 500), arg(words, 6, -500, 500), 0,
+									arg(words, 7, 10, 60));
+						break;
+
+					case TelloCommandValues.JUMP:
+						// No pads are simulated, the yaw is taken as a heading from the take off point.
+						int turn = Math.floorMod(Integer.parseInt(words[5]) - drone.getYaw() + 180, 360) - 180;
+
+						done = move(now, arg(words, 1, -500, 500), arg(words, 2, -500, 500), arg(words, 3, -500, 500), turn,
+									arg(words, 4, 10, 100));
+						break;
+
+					default:
+						response = read(words[0]);
+				}
+			}
+			catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+			{
+				response = "error";
+			}
+			catch (IllegalArgumentException e)
+			{
+				response = e.getMessage();
+			}
+		}
+
+		reply(response, sender, done);
+	}
+
+	private String read(String command)
+	{
+		switch (command)
+		{
+			case TelloCommandValues.CURRENT_BATTERY: return Integer.toString(drone.getBattery());
+			case TelloCommandValues.CURRENT_SPEED: return drone.getSpeed() + ".0";
+			case TelloCommandValues.CURRENT_FLY_TIME: return drone.getFlightTime() + "s";
+			case TelloCommandValues.CURRENT_HEIGHT: return drone.getHeight() / 10 + "dm";
+			case TelloCommandValues.CURRENT_TEMPERATURE: return "63~65C";
+			case TelloCommandValues.CURRENT_ATTITUDE: return "pitch:0;roll:0;yaw:" + drone.getYaw() + ";";
+			case TelloCommandValues.CURRENT_BAROMETER: return String.format(Locale.US, "%.2f", drone.getBarometer());
+			case TelloCommandValues.CURRENT_ACCELERATION: return "agx:0.00;agy:0.00;agz:-1000.00;";
+			case TelloCommandValues.CURRENT_TOF: return drone.getTof() * 10 + "mm";
+			case TelloCommandValues.SDK: return "20";
+			case TelloCommandValues.SN: return "0TQZSIM" + commandPort;
+			case "wifi?": return "90";
+		}
+
+		return "unknown command: " + command;
+	}
+
+	private long move(long now, int forward, int right, int up, int rotate, int speed)
+	{
+		if (!drone.isFlying()) throw new IllegalArgumentException("error Not in the air");
+
+		return drone.move(now, forward, right, up, rotate, speed, motionTimeScale);
+	}
+
+	private long scale(long nanos)
+	{
+		return (long) (nanos * motionTimeScale);
+	}
+
+	private static int arg(String[] words, int index, int min, int max)
+	{
+		int value = Integer.parseInt(words[index]);
+
+		if (value < min || value > max) throw new IllegalArgumentException("out of range");
+
+		return value;
+	}
+
+	// Send the response once the command is done plus the injected latency.
+	private void reply(String response, InetSocketAddress sender, long done)
+	{
+		long delay = TimeUnit.MILLISECONDS.toNanos(latency + (jitter > 0 ? ThreadLocalRandom.current().nextInt(jitter + 1) : 0));
+		long due;
+
+		synchronized (this)
+		{
+			due = Math.max(done + delay, lastReplyTime);
+			lastReplyTime = due;
+		}
+
+		byte[] data = response.getBytes(StandardCharsets.UTF_8);
+
+		scheduler.schedule(() ->
+		{
+			if (lose()) return;
+
+			try
+			{
+				commandChannel.send(ByteBuffer.wrap(data), sender);
+			}
+			catch (IOException e) { logger.warning("simulator send failed: " + e.toString()); }
+
+		}, due - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	private boolean lose()
+	{
+		if (lossRate <= 0 || ThreadLocalRandom.current().nextDouble() >= lossRate) return false;
+
+		lost.incrementAndGet();
+
+		return true;
+	}
+
+	// Runs on the scheduler.
+	private void sendStatus()
+	{
+		InetSocketAddress target = client;
+
+		if (target == null) return;
+
+		drone.status(System.nanoTime(), status);
+
+		if (lose()) return;
+
+		statusBuffer.clear();
+
+		for (int i = 0; i < status.length(); i++) statusBuffer.put((byte) status.charAt(i));
+
+		statusBuffer.flip();
+
+		try
+		{
+			statusChannel.send(statusBuffer, new InetSocketAddress(target.getAddress(), statusPort));
+			statusPackets.incrementAndGet();
+		}
+		catch (IOException e) { logger.warning("simulator status send failed: " + e.toString()); }
+	}
+
+	private synchronized void startVideo()
+	{
+		if (videoTask != null) return;
+
+		// One key frame a second, frame sizes giving the requested bit rate.
+		int frameBytes = Math.max(64, videoBitRate / 8 / frameRate / 2);
+
+		keyFrame = syntheticFrame(true, frameBytes * (frameRate + 1));
+		frame = syntheticFrame(false, frameBytes);
+		frameNumber = 0;
+
+		videoTask = scheduler.scheduleAtFixedRate(this::sendFrame, 0, 1_000_000_000L / frameRate, TimeUnit.NANOSECONDS);
+	}
+
+	private synchronized void stopVideo()
+	{
+		if (videoTask != null) videoTask.cancel(false);
+
+		videoTask = null;
+	}
+
+	// Runs on the scheduler. Sends a frame in Tello sized packets.
+	private void sendFrame()
+	{
+		InetSocketAddress target = client;
+
+		if (target == null) return;
+
+		byte[] data = frameNumber++ % frameRate == 0 ? keyFrame : frame;
+		InetSocketAddress videoTarget = new InetSocketAddress(target.getAddress(), videoPort);
+
+		try
+		{
+			for (int offset = 0; offset < data.length; offset += VIDEO_PACKET_SIZE)
+			{
+				videoBuffer.clear();
+				videoBuffer.put(data, offset, Math.min(VIDEO_PACKET_SIZE, data.length - offset)).flip();
+
+				if (lose()) continue;
+
+				videoChannel.send(videoBuffer, videoTarget);
+				videoPackets.incrementAndGet();
+			}
+		}
+		catch (IOException e) { logger.warning("simulator video send failed: " + e.toString()); }
+	}
+
+	// Annex B NAL units with random payload: SPS, PPS and IDR slice for a
+	// key frame, a non-IDR slice otherwise. Not decodable, but shaped like
+	// the Tello stream for transport and framing tests.
+	private static byte[] syntheticFrame(boolean key, int size)
+	{
+		byte[] data = new byte[size];
+		Random random = new Random(size);
+
+		random.nextBytes(data);
+
+		int position = 0;
+
+		if (key)
+		{
+			position = nal(data, position, 0x67, 16);		// SPS
+			position = nal(data, position, 0x68, 8);		// PPS
+			nal(data, position, 0x65, 0);					// IDR slice
+		}
+		else
+			nal(data, position, 0x41, 0);					// Non-IDR slice
+
+		return data;
+	}
+
+	// Write a start code and NAL header, keep the payload free of start codes.
+	private static int nal(byte[] data, int position, int header, int length)
+	{
+		data[position++] = 0;
+		data[position++] = 0;
+		data[position++] = 0;
+		data[position++] = 1;
+		data[position++] = (byte) header;
+
+		int end = length == 0 ? data.length : position + length;
+
+		for (int i = position; i < end; i++) if (data[i] == 0) data[i] = 1;
+
+		return end;
+	}
+}
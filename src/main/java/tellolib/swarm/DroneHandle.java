@@ -0,0 +1,74 @@
+package tellolib.swarm;
+
+import java.net.InetSocketAddress;
+
+import tellolib.communication.TelloCommunication;
+import tellolib.control.TelloControl;
+import tellolib.drone.TelloDrone;
+
+/**
+ * One drone of a {@link TelloSwarm}. Holds the drone's own TelloDrone state,
+ * TelloCommunication and TelloControl instances. The control instance is used
+ * exactly like the TelloControl singleton of a single drone program, except
+ * that video is not available.
+ */
+public class DroneHandle
+{
+	private final InetSocketAddress		address;
+	private final TelloDrone			drone;
+	private final TelloCommunication	communication;
+	private final TelloControl			control;
+
+	DroneHandle(InetSocketAddress address, TelloSwarm swarm)
+	{
+		this.address = address;
+
+		drone = new TelloDrone();
+
+		communication = new TelloCommunication(swarm.getTransport(), address);
+
+		control = new TelloControl(drone, communication, null);
+	}
+
+	/**
+	 * Get the drone ip address and command port.
+	 * @return Drone address.
+	 */
+	public InetSocketAddress getAddress()
+	{
+		return address;
+	}
+
+	/**
+	 * Get the state recorded for this drone.
+	 * @return TelloDrone instance of this drone.
+	 */
+	public TelloDrone getDrone()
+	{
+		return drone;
+	}
+
+	/**
+	 * Get the control interface for this drone.
+	 * @return TelloControl instance of this drone.
+	 */
+	public TelloControl getControl()
+	{
+		return control;
+	}
+
+	/**
+	 * Get the low level communication with this drone.
+	 * @return TelloCommunication instance of this drone.
+	 */
+	public TelloCommunication getCommunication()
+	{
+		return communication;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DroneHandle{" + address + '}';
+	}
+}
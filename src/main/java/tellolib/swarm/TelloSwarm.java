@@ -0,0 +1,146 @@
+package tellolib.swarm;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import tellolib.communication.TelloTransport;
+import tellolib.drone.TelloDrone;
+import tellolib.exception.TelloConnectionException;
+
+/**
+ * Controls a number of Tello EDU drones in station mode from one program.
+ * All command and status traffic for every drone is carried on one command
+ * socket and one status socket, served by the transport selector thread and
+ * scheduler thread, so the number of threads does not grow with the number
+ * of drones. Each drone gets a {@link DroneHandle} with its own state and
+ * control instances.
+ */
+public class TelloSwarm
+{
+	private final Logger				logger = Logger.getLogger("Tello");
+
+	private final TelloTransport		transport;
+	private final List<DroneHandle>		drones = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Create a swarm using the standard Tello local ports 8889 and 8890.
+	 */
+	public TelloSwarm()
+	{
+		this(TelloDrone.UDP_PORT, TelloDrone.UDP_STATUS_PORT);
+	}
+
+	/**
+	 * Create a swarm using the given local ports.
+	 * @param commandPort Local port for sending commands and receiving responses.
+	 * @param statusPort Local port the drones send their status feed to.
+	 */
+	public TelloSwarm(int commandPort, int statusPort)
+	{
+		transport = new TelloTransport(commandPort, statusPort);
+	}
+
+	/**
+	 * Open the swarm sockets. Must be called before drones are connected.
+	 */
+	public void open()
+	{
+		transport.open();
+
+		logger.info("Swarm open");
+	}
+
+	/**
+	 * Disconnect all drones and close the swarm sockets.
+	 */
+	public void close()
+	{
+		for (DroneHandle handle : drones)
+		{
+			try
+			{
+				handle.getControl().disconnect();
+			}
+			catch (Exception e) { logger.warning(handle + " disconnect failed: " + e.getMessage()); }
+		}
+
+		drones.clear();
+
+		transport.close();
+
+		logger.info("Swarm closed");
+	}
+
+	/**
+	 * Add a drone listening on the standard Tello command port.
+	 * @param ipAddress Drone ip address on the station network.
+	 * @return Handle for the new drone, not yet connected.
+	 */
+	public DroneHandle addDrone(String ipAddress)
+	{
+		try
+		{
+			return addDrone(new InetSocketAddress(InetAddress.getByName(ipAddress), TelloDrone.UDP_PORT));
+		}
+		catch (Exception e) { throw new TelloConnectionException(e); }
+	}
+
+	/**
+	 * Add a drone.
+	 * @param droneAddress Drone ip address and command port.
+	 * @return Handle for the new drone, not yet connected.
+	 */
+	public DroneHandle addDrone(InetSocketAddress droneAddress)
+	{
+		DroneHandle handle = new DroneHandle(droneAddress, this);
+
+		drones.add(handle);
+
+		return handle;
+	}
+
+	/**
+	 * Disconnect a drone and remove it from the swarm.
+	 * @param handle The drone to remove.
+	 */
+	public void removeDrone(DroneHandle handle)
+	{
+		if (drones.remove(handle)) handle.getControl().disconnect();
+	}
+
+	/**
+	 * Get the drones in the swarm.
+	 * @return List of drone handles in the order added.
+	 */
+	public List<DroneHandle> getDrones()
+	{
+		return new ArrayList<>(drones);
+	}
+
+	/**
+	 * Start an async operation on every drone at once.
+	 * @param operation Operation to start on one drone, for instance
+	 * {@code d -> d.getControl().takeOffAsync()}.
+	 * @return Future completed when the operation has completed on all drones,
+	 * or failed if it failed on any drone.
+	 */
+	public CompletableFuture<Void> all(Function<DroneHandle, CompletableFuture<?>> operation)
+	{
+		List<CompletableFuture<?>> results = new ArrayList<>();
+
+		for (DroneHandle handle : drones) results.add(operation.apply(handle));
+
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+	}
+
+	TelloTransport getTransport()
+	{
+		return transport;
+	}
+}